@@ -1,5 +1,6 @@
 package com.nli.tagwise.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
 // import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
@@ -19,6 +20,8 @@ import com.nli.tagwise.models.Role;
 import com.nli.tagwise.models.User;
 import com.nli.tagwise.repository.IUserRepo;
 // import com.nli.tagwise.repository.IUserRepo;
+import com.nli.tagwise.services.AnnotationService;
+import com.nli.tagwise.services.TaskTextService;
 import com.nli.tagwise.services.UserDetailsServiceImpl;
 
 @Configuration
@@ -87,6 +90,30 @@ public class AppConfig {
         };
     }
 
+    // reprise des anciennes annotations (task_annotations) vers la table annotation
+    @Bean
+    CommandLineRunner migrateLegacyAnnotations(AnnotationService annotationService) {
+        return args -> {
+            int migrated = annotationService.migrateLegacyAnnotations();
+            if (migrated > 0) {
+                System.out.println("Migrated " + migrated + " legacy annotations.");
+            }
+        };
+    }
+
+    // copie text1/text2 de la table task vers task_text; les colonnes ne sont supprimées
+    // que si tagwise.tasks.drop-legacy-text-columns=true
+    @Bean
+    CommandLineRunner migrateTaskTexts(TaskTextService taskTextService,
+            @Value("${tagwise.tasks.drop-legacy-text-columns:false}") boolean dropLegacyColumns) {
+        return args -> {
+            int moved = dropLegacyColumns ? taskTextService.dropTaskColumns() : taskTextService.migrateTaskColumns();
+            if (moved > 0) {
+                System.out.println("Copied texts of " + moved + " tasks to task_text.");
+            }
+        };
+    }
+
     // @Bean
     // UserDetailsService userDetailsService() {
     // return username -> userRepo.findByEmail(username)
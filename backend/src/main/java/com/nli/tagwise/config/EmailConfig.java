@@ -1,6 +1,7 @@
 package com.nli.tagwise.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.mail.javamail.JavaMailSender;
@@ -11,6 +12,12 @@ import java.util.Properties;
 @Configuration
 public class EmailConfig {
 
+    @Value("${spring.mail.host:smtp.gmail.com}")
+    private String emailHost;
+
+    @Value("${spring.mail.port:587}")
+    private int emailPort;
+
     @Value("${spring.mail.username}")
     private String emailUsername;
 
@@ -18,10 +25,11 @@ public class EmailConfig {
     private String emailPassword;
 
     @Bean
+    @ConditionalOnProperty(name = "tagwise.mail.sink", havingValue = "smtp", matchIfMissing = true)
     public JavaMailSender javaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost("smtp.gmail.com");
-        mailSender.setPort(587);
+        mailSender.setHost(emailHost);
+        mailSender.setPort(emailPort);
         mailSender.setUsername(emailUsername);
         mailSender.setPassword(emailPassword);
 
@@ -29,8 +37,18 @@ public class EmailConfig {
         props.put("mail.transport.protocol", "smtp");
         props.put("mail.smtp.auth", "true");
         props.put("mail.smtp.starttls.enable", "true");
-        props.put("mail.debug", "true");
+        // les workers ne doivent pas rester bloqués sur un serveur lent
+        props.put("mail.smtp.connectiontimeout", "10000");
+        props.put("mail.smtp.timeout", "10000");
+        props.put("mail.smtp.writetimeout", "10000");
 
         return mailSender;
     }
+
+    // faux serveur: les mails sont gardés en memoire au lieu d'etre envoyés (tests, dev)
+    @Bean
+    @ConditionalOnProperty(name = "tagwise.mail.sink", havingValue = "memory")
+    public JavaMailSender inMemoryMailSender() {
+        return new InMemoryMailSender();
+    }
 }
@@ -0,0 +1,40 @@
+package com.nli.tagwise.config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+
+// Mail sender that keeps the last messages in memory instead of talking to a server
+public class InMemoryMailSender extends JavaMailSenderImpl {
+    private static final int MAX_KEPT = 1000;
+
+    private final Deque<MimeMessage> sent = new ConcurrentLinkedDeque<>();
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+        for (MimeMessage message : mimeMessages) {
+            try {
+                message.saveChanges();
+                System.out.println("Mail sink: \"" + message.getSubject() + "\" to "
+                        + Arrays.toString(message.getAllRecipients()));
+            } catch (MessagingException e) {
+                System.err.println("Mail sink: unreadable message: " + e.getMessage());
+            }
+            sent.addLast(message);
+            if (sent.size() > MAX_KEPT) {
+                sent.pollFirst();
+            }
+        }
+    }
+
+    public List<MimeMessage> getSentMessages() {
+        return new ArrayList<>(sent);
+    }
+}
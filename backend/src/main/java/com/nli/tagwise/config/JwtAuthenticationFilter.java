@@ -15,8 +15,10 @@ import org.springframework.web.servlet.HandlerExceptionResolver;
 
 import com.nli.tagwise.models.UserDetailsImpl;
 import com.nli.tagwise.services.JwtService;
+import com.nli.tagwise.services.TokenRevocationService;
 import com.nli.tagwise.services.UserDetailsServiceImpl;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -28,15 +30,19 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final HandlerExceptionResolver handlerExceptionResolver;
     // service for JWT operations (like token generation, validation, etc.)
     private final JwtService jwtService;
-    // service for loading user details from the database
+    // service for loading user details from the database, only for tokens without claims
     private final UserDetailsServiceImpl userDetailsService;
+    // disabled and deleted users, checked instead of loading the user on every request
+    private final TokenRevocationService revocationService;
 
     public JwtAuthenticationFilter(
             JwtService jwtService,
             UserDetailsServiceImpl userDetailsService,
+            TokenRevocationService revocationService,
             HandlerExceptionResolver handlerExceptionResolver) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.revocationService = revocationService;
         this.handlerExceptionResolver = handlerExceptionResolver;
     }
 
@@ -55,15 +61,21 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         try {
             final String jwt = authHeader.substring(7);
-            final String userEmail = jwtService.extractEmail(jwt);
+            // Signature and expiration are checked here, once per request
+            final Claims claims = jwtService.extractAllClaims(jwt);
+            final String userEmail = claims.getSubject();
 
             Authentication authentication = SecurityContextHolder.getContext().getAuthentication(); // Null
                                                                                                     // authentification
             // cette implementation sera executee si l'utilisateur n'est pas authentifié et l'email est extrait depuis le token
             if (userEmail != null && authentication == null) {
-                UserDetailsImpl userDetails = (UserDetailsImpl) this.userDetailsService.loadUserByUsername(userEmail);
+                UserDetailsImpl userDetails = jwtService.toPrincipal(claims);
+                if (userDetails == null) {
+                    // Token without userId/role claims, fall back to the user table
+                    userDetails = (UserDetailsImpl) this.userDetailsService.loadUserByUsername(userEmail);
+                }
 
-                if (jwtService.isTokenValid(jwt, userDetails)) {
+                if (userDetails.isEnabled() && !revocationService.isRevoked(userDetails.getUser().getId())) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
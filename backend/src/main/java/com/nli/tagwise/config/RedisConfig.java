@@ -0,0 +1,29 @@
+package com.nli.tagwise.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+// conteneur des abonnements redis pub/sub, partagé par les services qui ecoutent un canal
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer() {
+            @Override
+            public void start() {
+                // Redis down at startup should not stop the application, the listeners only
+                // shorten the life of cached data that also expires on its own
+                try {
+                    super.start();
+                } catch (RuntimeException e) {
+                    System.err.println("Redis subscriptions not started: " + e.getMessage());
+                }
+            }
+        };
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
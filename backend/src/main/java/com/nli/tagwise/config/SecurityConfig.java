@@ -42,6 +42,8 @@ public class SecurityConfig {
                         .requestMatchers("/api/auth/**").permitAll()
                         // .requestMatchers("/api/users/**").hasRole("USER")
                         .requestMatchers("/api/annotators/**").hasRole("ADMIN")
+                        // Dashboard counters, stream and cache stats list other annotators' details
+                        .requestMatchers("/api/admin/stats/**").hasRole("ADMIN")
                         // .requestMatchers("/api/annotators/recent").permitAll()
                         // .requestMatchers("/api/admin/datasets/**").hasRole("ADMIN")
                         // .requestMatchers("/api/tasks/**").hasRole("USER")
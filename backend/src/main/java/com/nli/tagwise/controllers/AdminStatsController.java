@@ -0,0 +1,56 @@
+package com.nli.tagwise.controllers;
+
+import com.nli.tagwise.dto.AdminStatsDto;
+import com.nli.tagwise.dto.CacheStatsDto;
+import com.nli.tagwise.services.AdminStatsService;
+import com.nli.tagwise.services.DashboardStreamService;
+import com.nli.tagwise.services.ReadCacheService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin/stats")
+public class AdminStatsController {
+
+    private final AdminStatsService adminStatsService;
+    private final ReadCacheService readCacheService;
+    private final DashboardStreamService dashboardStreamService;
+
+    public AdminStatsController(AdminStatsService adminStatsService, ReadCacheService readCacheService,
+            DashboardStreamService dashboardStreamService) {
+        this.adminStatsService = adminStatsService;
+        this.readCacheService = readCacheService;
+        this.dashboardStreamService = dashboardStreamService;
+    }
+
+    /**
+     * Get every admin dashboard counter and recent list in one call
+     */
+    @GetMapping
+    public ResponseEntity<AdminStatsDto> getStats() {
+        return ResponseEntity.ok(adminStatsService.getStats());
+    }
+
+    /**
+     * Get a Server-Sent Events stream of dataset progress and annotator activity,
+     * pushed as labels are submitted instead of polling the counters
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDashboard() {
+        return dashboardStreamService.subscribe();
+    }
+
+    /**
+     * Get hit and miss counts of the dataset and task read cache, per region
+     */
+    @GetMapping("/cache")
+    public ResponseEntity<List<CacheStatsDto>> getCacheStats() {
+        return ResponseEntity.ok(readCacheService.getStats());
+    }
+}
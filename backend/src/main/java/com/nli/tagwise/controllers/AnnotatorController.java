@@ -1,8 +1,8 @@
 package com.nli.tagwise.controllers;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.bind.annotation.*;
@@ -12,8 +12,10 @@ import com.nli.tagwise.dto.SignUpDto; // Reusing existing DTO
 import com.nli.tagwise.models.Gender;
 import com.nli.tagwise.models.Role;
 import com.nli.tagwise.models.User;
-import com.nli.tagwise.repository.ITaskRepo;
 import com.nli.tagwise.repository.IUserRepo;
+import com.nli.tagwise.services.TokenRevocationService;
+import com.nli.tagwise.services.UserDetailsServiceImpl;
+import com.nli.tagwise.services.VersionStampService;
 
 @RestController
 @RequestMapping("/api/annotators")
@@ -21,12 +23,21 @@ public class AnnotatorController {
 
     private final IUserRepo userRepo;
     private final PasswordEncoder passwordEncoder;
-    private final ITaskRepo taskRepo;
-
-    public AnnotatorController(IUserRepo userRepo, ITaskRepo taskRepo, PasswordEncoder passwordEncoder) {
+    private final TokenRevocationService revocationService;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final VersionStampService versionStamps;
+
+    public AnnotatorController(
+            IUserRepo userRepo,
+            PasswordEncoder passwordEncoder,
+            TokenRevocationService revocationService,
+            UserDetailsServiceImpl userDetailsService,
+            VersionStampService versionStamps) {
         this.userRepo = userRepo;
         this.passwordEncoder = passwordEncoder;
-        this.taskRepo = taskRepo;
+        this.revocationService = revocationService;
+        this.userDetailsService = userDetailsService;
+        this.versionStamps = versionStamps;
     }
 
     /**
@@ -34,15 +45,7 @@ public class AnnotatorController {
      */
     @GetMapping("/recent")
     public ResponseEntity<List<AnnotatorDto>> getRecentAnnotators() {
-        List<User> recentAnnotators = userRepo.findTop3ByRoleAndDeletedFalseOrderByIdDesc(Role.ROLE_USER);
-        List<AnnotatorDto> annotatorDtos = recentAnnotators.stream()
-                .map(annotator -> new AnnotatorDto(
-                        annotator.getId(),
-                        annotator.getFirstName() + " " + annotator.getLastName(),
-                        annotator.getEmail(),
-                        taskRepo.countCompletedTasksByAnnotator(annotator)))
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(annotatorDtos);
+        return ResponseEntity.ok(userRepo.findRecentAnnotatorDtos(Role.ROLE_USER, PageRequest.of(0, 3)));
     }
 
     /**
@@ -109,7 +112,11 @@ public class AnnotatorController {
 
                     // Don't update email/role to maintain annotator status
 
-                    return ResponseEntity.ok(userRepo.save(user));
+                    User saved = userRepo.save(user);
+                    userDetailsService.evict(saved.getId());
+                    // Annotator names and status appear in dataset details
+                    versionStamps.bumpAll();
+                    return ResponseEntity.ok(saved);
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
@@ -125,6 +132,9 @@ public class AnnotatorController {
                     // Instead of deleting, mark as deleted
                     user.setDeleted(true);
                     userRepo.save(user);
+                    userDetailsService.evict(user.getId());
+                    versionStamps.bumpAll();
+                    revocationService.revoke(user.getId());
                     return ResponseEntity.noContent().<Void>build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -143,6 +153,14 @@ public class AnnotatorController {
                 .map(user -> {
                     user.setEnabled(enabled);
                     userRepo.save(user);
+                    userDetailsService.evict(user.getId());
+                    versionStamps.bumpAll();
+                    // Tokens already issued stop working at once, not when they expire
+                    if (enabled && !Boolean.TRUE.equals(user.isDeleted())) {
+                        revocationService.restore(user.getId());
+                    } else {
+                        revocationService.revoke(user.getId());
+                    }
                     return ResponseEntity.ok().<Void>build();
                 })
                 .orElse(ResponseEntity.notFound().build());
@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.nli.tagwise.custom.AlreadyVerifiedException;
+import com.nli.tagwise.custom.LoginThrottledException;
 import com.nli.tagwise.custom.TokenGenerationException;
 import com.nli.tagwise.custom.UserNotFoundException;
 import com.nli.tagwise.dto.CustomResponse;
@@ -82,6 +83,11 @@ public class AuthenticationController {
             return ResponseEntity
                     .status(HttpStatus.UNAUTHORIZED)
                     .body(new CustomResponse("User not found!"));
+        } catch (LoginThrottledException e) {
+            return ResponseEntity
+                    .status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header("Retry-After", "1")
+                    .body(new CustomResponse("Too many login attempts in progress, please retry."));
         } catch (Exception e) {
             return ResponseEntity
                     .status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -4,11 +4,22 @@ import com.nli.tagwise.dto.DatasetDto;
 import com.nli.tagwise.dto.DatasetListDto;
 import com.nli.tagwise.dto.DatasetDetailsDto;
 import com.nli.tagwise.dto.DatasetAnnotatorDto;
+import com.nli.tagwise.dto.LabelCountDto;
+import com.nli.tagwise.dto.SampleStrata;
+import com.nli.tagwise.dto.TaskSampleDto;
+import com.nli.tagwise.models.ConsensusMethod;
 import com.nli.tagwise.models.Dataset;
-import com.nli.tagwise.models.Task;
-import com.nli.tagwise.models.User;
 // import com.nli.tagwise.repository.ITaskRepo;
+import com.nli.tagwise.services.AgreementService;
+import com.nli.tagwise.services.AnnotationService;
+import com.nli.tagwise.services.ConsensusService;
 import com.nli.tagwise.services.DatasetService;
+import com.nli.tagwise.services.ReadCacheService;
+import com.nli.tagwise.services.TaskSamplingService;
+import com.nli.tagwise.services.TaskService;
+import com.nli.tagwise.services.VersionStampService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,32 +27,36 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/admin/datasets")
 public class DatasetController {
 
     private final DatasetService datasetService;
+    private final TaskSamplingService taskSamplingService;
+    private final AnnotationService annotationService;
+    private final AgreementService agreementService;
+    private final ConsensusService consensusService;
+    private final VersionStampService versionStamps;
+    private final TaskService taskService;
     // private final ITaskRepo taskRepo;
 
-    public DatasetController(DatasetService datasetService) {
+    public DatasetController(DatasetService datasetService, TaskSamplingService taskSamplingService,
+            AnnotationService annotationService, AgreementService agreementService,
+            ConsensusService consensusService, VersionStampService versionStamps, TaskService taskService) {
         this.datasetService = datasetService;
+        this.taskSamplingService = taskSamplingService;
+        this.annotationService = annotationService;
+        this.agreementService = agreementService;
+        this.consensusService = consensusService;
+        this.versionStamps = versionStamps;
+        this.taskService = taskService;
         // this.taskRepo = taskRepo;
     }
 
     @GetMapping("/recent")
     public ResponseEntity<List<DatasetDto>> getRecentDatasets() {
-        List<Dataset> recentDatasets = datasetService.getRecentDatasets(3);
-
-        List<DatasetDto> datasetDtos = recentDatasets.stream()
-                .map(dataset -> new DatasetDto(
-                        dataset.getName(),
-                        dataset.getDescription(),
-                        dataset.getClasses(),
-                        dataset.getTasks() != null ? dataset.getTasks().size() : 0))
-                .collect(Collectors.toList());
-        return ResponseEntity.ok(datasetDtos);
+        return ResponseEntity.ok(datasetService.getRecentDatasets(3));
     }
 
     @GetMapping("/count")
@@ -81,13 +96,98 @@ public class DatasetController {
     }
 
     @GetMapping("/list")
-    public ResponseEntity<List<DatasetListDto>> listDatasetDtos() {
-        return ResponseEntity.ok(datasetService.listDatasetDtos());
+    public ResponseEntity<?> listDatasetDtos(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = versionStamps.datasetListTag();
+        if (VersionStampService.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        try {
+            // A cached page is sent with the tag it was loaded under, which may be older than etag
+            ReadCacheService.Stamped<List<DatasetListDto>> datasets =
+                    datasetService.listDatasetDtos(page, size, fields, etag);
+            return ResponseEntity.ok().eTag(datasets.stamp()).cacheControl(CacheControl.noCache())
+                    .body(datasets.value());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{datasetId}/details")
-    public ResponseEntity<DatasetDetailsDto> getDatasetFullDetails(@PathVariable Long datasetId) {
-        return ResponseEntity.ok(datasetService.getDatasetFullDetails(datasetId));
+    public ResponseEntity<DatasetDetailsDto> getDatasetFullDetails(
+            @PathVariable Long datasetId,
+            @RequestParam(defaultValue = "5") int sampleSize,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = versionStamps.datasetTag(datasetId);
+        if (VersionStampService.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        ReadCacheService.Stamped<DatasetDetailsDto> details =
+                datasetService.getDatasetFullDetails(datasetId, Math.min(sampleSize, 100), etag);
+        return ResponseEntity.ok().eTag(details.stamp()).cacheControl(CacheControl.noCache())
+                .body(details.value());
+    }
+
+    @GetMapping("/{datasetId}/sample")
+    public ResponseEntity<?> sampleTasks(
+            @PathVariable Long datasetId,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "NONE") SampleStrata stratifyBy,
+            @RequestParam(required = false) Boolean completed,
+            @RequestParam(required = false) Long seed) {
+        try {
+            List<TaskSampleDto> sample = taskSamplingService.sample(
+                    datasetId, Math.min(size, 500), stratifyBy, completed, seed);
+            return ResponseEntity.ok(sample);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/{datasetId}/label-counts")
+    public ResponseEntity<List<LabelCountDto>> getLabelCounts(@PathVariable Long datasetId) {
+        return ResponseEntity.ok(annotationService.countLabels(datasetId));
+    }
+
+    /**
+     * Get inter-annotator agreement (Fleiss, Krippendorff, pairwise Cohen) of a dataset
+     */
+    @GetMapping("/{datasetId}/agreement")
+    public ResponseEntity<?> getAgreement(@PathVariable Long datasetId) {
+        try {
+            return ResponseEntity.ok(agreementService.getAgreement(datasetId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Recompute agreement of a dataset from the stored annotations
+     */
+    @PostMapping("/{datasetId}/agreement/recompute")
+    public ResponseEntity<?> recomputeAgreement(@PathVariable Long datasetId) {
+        try {
+            return ResponseEntity.ok(agreementService.recomputeAgreement(datasetId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    /**
+     * Compute and store consensus labels of the tasks that reached the redundancy target
+     */
+    @PostMapping("/{datasetId}/consensus")
+    public ResponseEntity<?> computeConsensus(
+            @PathVariable Long datasetId,
+            @RequestParam(defaultValue = "MAJORITY") ConsensusMethod method) {
+        try {
+            return ResponseEntity.ok(consensusService.computeConsensus(datasetId, method));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping
@@ -96,13 +196,22 @@ public class DatasetController {
     }
 
     @GetMapping("/{id}/summary")
-    public ResponseEntity<Dataset> getDatasetSummary(@PathVariable Long id) {
-        return ResponseEntity.ok(datasetService.getDatasetDetails(id));
+    public ResponseEntity<?> getDatasetSummary(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(datasetService.getDatasetSummary(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
+    // Texts and labels no longer live on the Task entity, so tasks go out as DTOs
     @GetMapping("/{id}/tasks")
-    public ResponseEntity<List<Task>> getDatasetTasks(@PathVariable Long id) {
-        return ResponseEntity.ok(datasetService.getDatasetTasks(id));
+    public ResponseEntity<?> getDatasetTasks(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(taskService.getTasksForDataset(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @GetMapping("/{id}/annotators")
@@ -111,8 +220,16 @@ public class DatasetController {
     }
 
     @GetMapping("/{id}/unassigned-annotators")
-    public ResponseEntity<List<User>> getUnassignedAnnotators(@PathVariable Long id) {
-        return ResponseEntity.ok(datasetService.getUnassignedAnnotators(id));
+    public ResponseEntity<?> getUnassignedAnnotators(
+            @PathVariable Long id,
+            @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size) {
+        try {
+            return ResponseEntity.ok(datasetService.getUnassignedAnnotators(id, search, page, size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
     }
 
     @DeleteMapping("/{datasetId}/annotators")
@@ -121,4 +238,9 @@ public class DatasetController {
             @RequestBody List<Long> annotatorIds) {
         return ResponseEntity.ok(datasetService.removeAnnotatorsFromDataset(datasetId, annotatorIds));
     }
+
+    // Answered from the version stamps alone, nothing is queried or serialized
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+    }
 }
@@ -1,8 +1,17 @@
 package com.nli.tagwise.controllers;
 
+import com.nli.tagwise.custom.AnnotationConflictException;
+import com.nli.tagwise.dto.AnnotationSubmissionDto;
+import com.nli.tagwise.dto.BatchSubmissionDto;
+import com.nli.tagwise.dto.CustomResponse;
 import com.nli.tagwise.dto.TaskDto;
+import com.nli.tagwise.dto.WorkPackageDto;
 import com.nli.tagwise.models.UserDetailsImpl;
 import com.nli.tagwise.services.TaskService;
+import com.nli.tagwise.services.VersionStampService;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
@@ -15,9 +24,11 @@ import java.util.List;
 public class TaskController {
 
     private final TaskService taskService;
+    private final VersionStampService versionStamps;
 
-    public TaskController(TaskService taskService) {
+    public TaskController(TaskService taskService, VersionStampService versionStamps) {
         this.taskService = taskService;
+        this.versionStamps = versionStamps;
     }
 
     /**
@@ -46,19 +57,40 @@ public class TaskController {
 
     /**
      * Get all tasks for a dataset (admin only)
+     * fields= restricts the response, e.g. fields=id,completionStatus
      */
     @GetMapping("/dataset/{datasetId}")
     @PreAuthorize("hasRole('ROLE_ADMIN')")
-    public ResponseEntity<List<TaskDto>> getTasksForDataset(@PathVariable Long datasetId) {
-        return ResponseEntity.ok(taskService.getTasksForDataset(datasetId));
+    public ResponseEntity<?> getTasksForDataset(
+            @PathVariable Long datasetId,
+            @RequestParam(required = false) String fields,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        // Taken before the query, a write in between only makes the tag older than the body
+        String etag = versionStamps.datasetTag(datasetId);
+        if (VersionStampService.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        try {
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                    .body(taskService.getTasksForDataset(datasetId, fields));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new CustomResponse(e.getMessage()));
+        }
     }
 
     /**
      * Get all tasks for the current annotator
      */
     @GetMapping("/annotator/{annotatorId}")
-    public ResponseEntity<List<TaskDto>> getTasksForAnnotator(@PathVariable Long annotatorId) {
-        return ResponseEntity.ok(taskService.getTasksForAnnotator(annotatorId));
+    public ResponseEntity<List<TaskDto>> getTasksForAnnotator(
+            @PathVariable Long annotatorId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = versionStamps.annotatorTag(annotatorId);
+        if (VersionStampService.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .body(taskService.getTasksForAnnotator(annotatorId));
     }
 
     /**
@@ -66,8 +98,77 @@ public class TaskController {
      */
     @GetMapping("/annotator/my-tasks")
     public ResponseEntity<List<TaskDto>> getCurrentUserTasks(
-            @AuthenticationPrincipal UserDetailsImpl userDetails) {
-        return ResponseEntity.ok(taskService.getTasksForAnnotator(userDetails.getUser().getId()));
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return getTasksForAnnotator(userDetails.getUser().getId(), ifNoneMatch);
+    }
+
+    /**
+     * Get the changes to an annotator's tasks since the version of a previous sync.
+     * Without since, or when it is too old, the whole list comes back with reset set.
+     */
+    @GetMapping("/annotator/{annotatorId}/changes")
+    public ResponseEntity<?> getTaskChanges(
+            @PathVariable Long annotatorId,
+            @RequestParam(required = false) Long since) {
+        try {
+            return ResponseEntity.ok(taskService.getTaskChanges(annotatorId, since));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new CustomResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the changes to the tasks of the currently authenticated annotator
+     */
+    @GetMapping("/annotator/my-tasks/changes")
+    public ResponseEntity<?> getCurrentUserTaskChanges(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestParam(required = false) Long since) {
+        return getTaskChanges(userDetails.getUser().getId(), since);
+    }
+
+    /**
+     * Get the tasks of the currently authenticated annotator as a work package:
+     * dataset names and labels listed once, tasks referring to them by id
+     */
+    @GetMapping("/annotator/my-tasks/work-package")
+    public ResponseEntity<WorkPackageDto> getCurrentUserWorkPackage(
+            @AuthenticationPrincipal UserDetailsImpl userDetails,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return getWorkPackage(userDetails.getUser().getId(), ifNoneMatch);
+    }
+
+    /**
+     * Get the tasks of an annotator as a work package
+     */
+    @GetMapping("/annotator/{annotatorId}/work-package")
+    public ResponseEntity<WorkPackageDto> getWorkPackage(
+            @PathVariable Long annotatorId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String etag = versionStamps.annotatorTag(annotatorId);
+        if (VersionStampService.matches(ifNoneMatch, etag)) {
+            return notModified(etag);
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache())
+                .body(taskService.getWorkPackage(annotatorId));
+    }
+
+    /**
+     * Get the next task the annotator should label: short of labels and most contested first.
+     * Returns 204 when nothing is left.
+     */
+    @GetMapping("/annotator/{annotatorId}/next")
+    public ResponseEntity<?> getNextTask(
+            @PathVariable Long annotatorId,
+            @RequestParam(required = false) Long datasetId) {
+        try {
+            return taskService.getNextTask(annotatorId, datasetId)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElseGet(() -> ResponseEntity.noContent().build());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new CustomResponse(e.getMessage()));
+        }
     }
 
     /**
@@ -81,6 +182,36 @@ public class TaskController {
         return ResponseEntity.ok(taskService.submitAnnotation(taskId, annotatorId, annotation));
     }
 
+    /**
+     * Submit an annotation through the idempotent upsert path.
+     * Retries must reuse the same submissionId; a stale expectedVersion gives 409.
+     */
+    @PostMapping("/{taskId}/submissions")
+    public ResponseEntity<?> submitAnnotation(
+            @PathVariable Long taskId,
+            @RequestBody AnnotationSubmissionDto submission) {
+        try {
+            return ResponseEntity.ok(taskService.submitAnnotation(taskId, submission));
+        } catch (AnnotationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new CustomResponse(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new CustomResponse(e.getMessage()));
+        }
+    }
+
+    /**
+     * Submit many annotations of one annotator in a single request.
+     * Returns one result per item; rejected items carry an error instead of failing the batch.
+     */
+    @PostMapping("/submissions/batch")
+    public ResponseEntity<?> submitAnnotations(@RequestBody BatchSubmissionDto batch) {
+        try {
+            return ResponseEntity.ok(taskService.submitAnnotations(batch));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(new CustomResponse(e.getMessage()));
+        }
+    }
+
     /**
      * Find tasks with fewer than 3 annotators (admin only)
      */
@@ -100,4 +231,9 @@ public class TaskController {
             @RequestParam Long annotatorId) {
         return ResponseEntity.ok(taskService.assignTaskToAnnotator(taskId, annotatorId));
     }
-}
\ No newline at end of file
+
+    // Answered from the version stamps alone, nothing is queried or serialized
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+    }
+}
@@ -0,0 +1,7 @@
+package com.nli.tagwise.custom;
+
+public class AnnotationConflictException extends RuntimeException {
+    public AnnotationConflictException(String message) {
+        super(message);
+    }
+}
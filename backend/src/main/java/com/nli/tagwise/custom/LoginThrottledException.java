@@ -0,0 +1,7 @@
+package com.nli.tagwise.custom;
+
+public class LoginThrottledException extends RuntimeException {
+    public LoginThrottledException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,12 @@
+package com.nli.tagwise.dto;
+
+// Projection for the single aggregate query behind the admin dashboard
+public interface AdminCountsView {
+    long getTaskCount();
+
+    long getCompletedTaskCount();
+
+    long getAnnotatorCount();
+
+    long getDatasetCount();
+}
@@ -0,0 +1,23 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminStatsDto {
+    private long totalTasks;
+    private long completedTasks;
+    private long totalAnnotators;
+    private long totalDatasets;
+    private List<DatasetDto> recentDatasets;
+    private List<AnnotatorDto> recentAnnotators;
+    private Instant generatedAt; // When the snapshot was computed; values may lag by a few seconds
+}
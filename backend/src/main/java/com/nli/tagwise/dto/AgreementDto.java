@@ -0,0 +1,23 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Agreement coefficients are null when undefined (fewer than two ratings per item, single label used...)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AgreementDto {
+    private Long datasetId;
+    private long items; // Tasks with at least two labels
+    private long ratings; // Labels on those tasks
+    private Double fleissKappa;
+    private Double krippendorffAlpha;
+    private Double meanCohenKappa;
+    private List<PairAgreementDto> pairs;
+}
@@ -0,0 +1,17 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnnotationSubmissionDto {
+    private Long annotatorId;
+    private String label;
+    private String submissionId; // Client-generated key, reused on retries so they are applied once
+    private Integer expectedVersion; // Optional: reject the write if the stored annotation moved on
+}
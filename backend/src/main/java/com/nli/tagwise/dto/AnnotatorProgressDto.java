@@ -0,0 +1,18 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnnotatorProgressDto {
+    private Long id;
+    private String name;
+    private String email;
+    private long assignedTasks;
+    private long completedTasks;
+}
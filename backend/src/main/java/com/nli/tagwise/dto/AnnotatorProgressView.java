@@ -0,0 +1,16 @@
+package com.nli.tagwise.dto;
+
+// Per-annotator assigned/completed counts for one dataset, grouped in SQL
+public interface AnnotatorProgressView {
+    Long getAnnotatorId();
+
+    String getFirstName();
+
+    String getLastName();
+
+    String getEmail();
+
+    long getAssignedTasks();
+
+    long getCompletedTasks();
+}
@@ -0,0 +1,22 @@
+package com.nli.tagwise.dto;
+
+import com.nli.tagwise.models.Role;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Annotator fields needed by pickers and lists, without password hash or flags
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnnotatorSummaryDto {
+    private Long id;
+    private String firstName;
+    private String lastName;
+    private String email;
+    private Role role;
+    private Boolean enabled;
+}
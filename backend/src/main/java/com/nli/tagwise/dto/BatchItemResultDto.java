@@ -0,0 +1,23 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchItemResultDto {
+    private Long taskId;
+    private boolean accepted;
+    private String label;
+    private Integer version;
+    private String submissionId;
+    private String error; // Set when the item was rejected
+
+    public static BatchItemResultDto rejected(Long taskId, String submissionId, String error) {
+        return new BatchItemResultDto(taskId, false, null, null, submissionId, error);
+    }
+}
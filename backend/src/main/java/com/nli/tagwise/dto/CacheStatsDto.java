@@ -0,0 +1,20 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CacheStatsDto {
+    private String region;
+    private long localHits;
+    private long redisHits;
+    private long misses;
+    private long coalesced; // Misses that joined a load already running instead of starting one
+    private long localSize;
+    private double hitRate;
+}
@@ -0,0 +1,25 @@
+package com.nli.tagwise.dto;
+
+import com.nli.tagwise.models.ConsensusMethod;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsensusResultDto {
+    private Long datasetId;
+    private ConsensusMethod method;
+    private int tasks; // Tasks that reached the redundancy target and got a consensus label
+    private long ratings;
+    private int iterations;
+    private long durationMs;
+    private List<LabelCountDto> labelCounts;
+    private Map<Long, Double> annotatorAccuracy; // Estimated share of an annotator's labels matching the consensus
+}
@@ -0,0 +1,42 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.List;
+
+// One push of the admin dashboard stream: progress of the datasets that received labels
+// since the previous push and what each active annotator submitted in that window
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardUpdateDto {
+    private List<DatasetProgress> datasets;
+    private List<AnnotatorActivity> annotators;
+    private Instant generatedAt;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class DatasetProgress {
+        private Long datasetId;
+        private long taskCount;
+        private long completedTaskCount;
+        private double completionPercentage;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class AnnotatorActivity {
+        private Long annotatorId;
+        private long submissions; // Labels stored since the previous push, re-labels included
+        private Instant lastSubmittedAt;
+    }
+}
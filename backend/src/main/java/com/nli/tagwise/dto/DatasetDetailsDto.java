@@ -14,6 +14,7 @@ public class DatasetDetailsDto {
     private String classes;
     private double completionPercentage;
     private int totalPairs;
+    private long completedPairs;
     private List<TextPairDto> samplePairs;
-    private List<AnnotatorDto> assignedAnnotators;
+    private List<AnnotatorProgressDto> assignedAnnotators;
 }
@@ -1,18 +1,23 @@
 package com.nli.tagwise.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
+// Null fields are left out, so fields= selections only carry what was asked for
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 @Setter
+@NoArgsConstructor
 public class DatasetListDto {
     private Long id;
     private String name;
-    private double completionPercentage;
+    private Double completionPercentage;
     private String classes;
     private String description;
 
-    public DatasetListDto(Long id, String name, double completionPercentage, String classes, String description) {
+    public DatasetListDto(Long id, String name, Double completionPercentage, String classes, String description) {
         this.id = id;
         this.name = name;
         this.completionPercentage = completionPercentage;
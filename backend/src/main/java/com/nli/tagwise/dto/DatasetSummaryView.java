@@ -0,0 +1,21 @@
+package com.nli.tagwise.dto;
+
+// Lightweight dataset row with its task and completion counts computed in SQL
+public interface DatasetSummaryView {
+    Long getId();
+
+    String getName();
+
+    String getDescription();
+
+    String getClasses();
+
+    long getTaskCount();
+
+    long getCompletedTaskCount();
+
+    default double getCompletionPercentage() {
+        if (getTaskCount() == 0) return 0;
+        return (double) getCompletedTaskCount() / getTaskCount() * 100;
+    }
+}
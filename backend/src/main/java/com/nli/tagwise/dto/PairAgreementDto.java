@@ -0,0 +1,17 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class PairAgreementDto {
+    private Long annotatorId;
+    private Long otherAnnotatorId;
+    private long sharedTasks;
+    private Double cohenKappa;
+}
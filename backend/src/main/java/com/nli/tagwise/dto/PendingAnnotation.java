@@ -0,0 +1,18 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+// A validated submission waiting in the write-behind journal, already encoded for the upsert
+@Getter
+@AllArgsConstructor
+public class PendingAnnotation {
+    private final long taskId;
+    private final long annotatorId;
+    private final long datasetId;
+    private final short labelCode;
+    private final String submissionId;
+    private final Instant submittedAt;
+}
@@ -0,0 +1,6 @@
+package com.nli.tagwise.dto;
+
+// How a task sample is split before drawing from each group
+public enum SampleStrata {
+    NONE, ANNOTATOR, LABEL, COMPLETION
+}
@@ -0,0 +1,18 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubmissionResultDto {
+    private Long taskId;
+    private Long annotatorId;
+    private String label;
+    private Integer version; // Null while the submission is only journaled (write-behind mode)
+    private String submissionId;
+}
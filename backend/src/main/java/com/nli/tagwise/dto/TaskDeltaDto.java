@@ -0,0 +1,21 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Changes to an annotator's task list since a sync version. Clients apply upserted and removed
+// to their copy, or replace it with upserted when reset is set, then sync again from version.
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskDeltaDto {
+    private long version;
+    private boolean reset;
+    private List<TaskDto> upserted;
+    private List<Long> removed;
+}
@@ -1,5 +1,6 @@
 package com.nli.tagwise.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -8,6 +9,8 @@ import lombok.Setter;
 import java.util.List;
 import java.util.Map;
 
+// Null fields are left out, so fields= selections only carry what was asked for
+@JsonInclude(JsonInclude.Include.NON_NULL)
 @Getter
 @Setter
 @NoArgsConstructor
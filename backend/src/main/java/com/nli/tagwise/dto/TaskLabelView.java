@@ -0,0 +1,10 @@
+package com.nli.tagwise.dto;
+
+// Encoded label of one annotation, keyed by task
+public interface TaskLabelView {
+    Long getTaskId();
+
+    Long getAnnotatorId();
+
+    short getLabelCode();
+}
@@ -0,0 +1,18 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class TaskSampleDto {
+    private String stratum;
+    private Long population; // Rows seen for this stratum, null when the sample came from id probes
+    private List<TextPairDto> pairs;
+}
@@ -1,10 +1,12 @@
 package com.nli.tagwise.dto;
 
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Getter
 @Setter
+@NoArgsConstructor
 public class TextPairDto {
     private Long id;
     private String text1;
@@ -0,0 +1,42 @@
+package com.nli.tagwise.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+// Tasks of an annotator with dataset metadata listed once; tasks refer to it by datasetId
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkPackageDto {
+    private List<Dataset> datasets;
+    private List<Task> tasks;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Dataset {
+        private Long id;
+        private String name;
+        private List<String> labels;
+    }
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Task {
+        private Long id;
+        private Long datasetId;
+        private String text1;
+        private String text2;
+        private boolean completed;
+        private String label; // The annotator's own label, null until submitted
+        private boolean newAssignment; // No completion status recorded for the annotator yet
+    }
+}
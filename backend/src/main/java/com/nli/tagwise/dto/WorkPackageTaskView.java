@@ -0,0 +1,16 @@
+package com.nli.tagwise.dto;
+
+// One assigned task of an annotator with that annotator's own status and label code
+public interface WorkPackageTaskView {
+    Long getId();
+
+    Long getDatasetId();
+
+    String getText1();
+
+    String getText2();
+
+    Boolean getCompleted();
+
+    Short getLabelCode();
+}
@@ -0,0 +1,14 @@
+package com.nli.tagwise.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published once an annotation row is written; carries the label now stored for (task, annotator)
+@Getter
+@AllArgsConstructor
+public class AnnotationSubmittedEvent {
+    private final long datasetId;
+    private final long taskId;
+    private final long annotatorId;
+    private final short labelCode;
+}
@@ -0,0 +1,11 @@
+package com.nli.tagwise.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when a dataset and its tasks were created from an upload
+@Getter
+@AllArgsConstructor
+public class DatasetUploadedEvent {
+    private final long datasetId;
+}
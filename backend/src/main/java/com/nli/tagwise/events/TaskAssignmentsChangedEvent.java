@@ -0,0 +1,11 @@
+package com.nli.tagwise.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Published when tasks of a dataset were assigned to or removed from annotators
+@Getter
+@AllArgsConstructor
+public class TaskAssignmentsChangedEvent {
+    private final long datasetId;
+}
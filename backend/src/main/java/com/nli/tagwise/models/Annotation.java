@@ -0,0 +1,49 @@
+package com.nli.tagwise.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// One label per (task, annotator). The label is stored as its code in the
+// dataset's LabelDictionary; dataset_id is denormalized for per-dataset GROUP BYs.
+// Rows are written with native upserts (see AnnotationService), not through JPA.
+@Setter
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "annotation",
+        uniqueConstraints = @UniqueConstraint(name = "uk_annotation_task_annotator", columnNames = {"task_id", "annotator_id"}),
+        indexes = @Index(name = "idx_annotation_dataset_label", columnList = "dataset_id, label_code"))
+public class Annotation {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "task_id", nullable = false)
+    private Task task;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "annotator_id", nullable = false)
+    private User annotator;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "dataset_id", nullable = false)
+    private Dataset dataset;
+
+    @Column(name = "label_code", nullable = false)
+    private short labelCode;
+
+    // Bumped on every accepted change; retries carrying the same submission id leave it as is
+    @Column(name = "version", nullable = false, columnDefinition = "INT DEFAULT 1")
+    private int version = 1;
+
+    @Column(name = "submission_id", length = 64)
+    private String submissionId;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+}
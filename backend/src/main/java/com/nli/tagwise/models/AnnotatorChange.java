@@ -0,0 +1,47 @@
+package com.nli.tagwise.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// One row per change to the task list of an annotator. The version is the number clients
+// sync from, shared by the rows of one recorded change (see AnnotatorChangeLog); rows are
+// written with JDBC batches in the transaction of the change and pruned once older than
+// the retention.
+@Setter
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "annotator_change",
+        indexes = {
+                @Index(name = "idx_annotator_change_version", columnList = "annotator_id, version"),
+                @Index(name = "idx_annotator_change_changed_at", columnList = "changed_at")
+        })
+public class AnnotatorChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Null only on rows written before versions existed, set to the id at startup
+    @Column(name = "version")
+    private Long version;
+
+    @Column(name = "annotator_id", nullable = false)
+    private Long annotatorId;
+
+    @Column(name = "task_id", nullable = false)
+    private Long taskId;
+
+    @Column(name = "dataset_id", nullable = false)
+    private Long datasetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "type", nullable = false, length = 16)
+    private AnnotatorChangeType type;
+
+    @Column(name = "changed_at", nullable = false)
+    private Instant changedAt;
+}
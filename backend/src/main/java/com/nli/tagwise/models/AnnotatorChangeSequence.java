@@ -0,0 +1,22 @@
+package com.nli.tagwise.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Single-row counter handing out change log versions (see AnnotatorChangeLog). It is
+// incremented in the transaction that records the changes and stays locked until that
+// transaction commits, so versions become visible in commit order.
+@Setter
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "annotator_change_sequence")
+public class AnnotatorChangeSequence {
+    @Id
+    private Long id;
+
+    @Column(name = "last_version", nullable = false)
+    private Long lastVersion;
+}
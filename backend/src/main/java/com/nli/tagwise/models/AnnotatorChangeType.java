@@ -0,0 +1,5 @@
+package com.nli.tagwise.models;
+
+public enum AnnotatorChangeType {
+    ASSIGNED, UNASSIGNED, LABELED
+}
@@ -0,0 +1,5 @@
+package com.nli.tagwise.models;
+
+public enum ConsensusMethod {
+    MAJORITY, DAWID_SKENE
+}
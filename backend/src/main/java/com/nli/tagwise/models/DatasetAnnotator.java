@@ -9,7 +9,7 @@ import lombok.Setter;
 @Getter
 @NoArgsConstructor
 @Entity
-@Table(name = "dataset_annotator")
+@Table(name = "dataset_annotator", indexes = @Index(name = "idx_dataset_annotator_pair", columnList = "dataset_id, annotator_id"))
 public class DatasetAnnotator {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,90 @@
+package com.nli.tagwise.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Parsed form of Dataset.classes: each label gets a small integer code (its position),
+// which is what the annotation table stores instead of the label text
+public class LabelDictionary {
+    private final List<String> labels;
+    private final Map<String, Short> codes;
+
+    private LabelDictionary(List<String> labels) {
+        this.labels = Collections.unmodifiableList(labels);
+        this.codes = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            codes.put(labels.get(i), (short) i);
+        }
+    }
+
+    /**
+     * Parses a semicolon-separated class list, ignoring blanks and duplicates.
+     *
+     * @param classes The raw classes string of a dataset
+     * @return The dictionary, labels coded in their declaration order
+     */
+    public static LabelDictionary parse(String classes) {
+        List<String> labels = new ArrayList<>();
+        if (classes != null) {
+            for (String raw : classes.split(";")) {
+                String label = raw.trim();
+                if (!label.isEmpty() && !labels.contains(label)) {
+                    labels.add(label);
+                }
+            }
+        }
+        if (labels.size() > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many classes");
+        }
+        return new LabelDictionary(labels);
+    }
+
+    /**
+     * Returns the code of a label, matching case-insensitively when there is no exact match.
+     *
+     * @param label The label submitted by an annotator
+     * @return The label code
+     */
+    public short encode(String label) {
+        if (label != null) {
+            String trimmed = label.trim();
+            Short code = codes.get(trimmed);
+            if (code != null) {
+                return code;
+            }
+            for (int i = 0; i < labels.size(); i++) {
+                if (labels.get(i).equalsIgnoreCase(trimmed)) {
+                    return (short) i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown label: " + label);
+    }
+
+    public String decode(int code) {
+        if (code < 0 || code >= labels.size()) {
+            throw new IllegalArgumentException("Unknown label code: " + code);
+        }
+        return labels.get(code);
+    }
+
+    public boolean contains(String label) {
+        try {
+            encode(label);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public List<String> getLabels() {
+        return labels;
+    }
+
+    public int size() {
+        return labels.size();
+    }
+}
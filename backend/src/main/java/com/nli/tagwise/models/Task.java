@@ -25,16 +25,8 @@ public class Task {
     @JoinTable(name = "task_annotator", joinColumns = @JoinColumn(name = "task_id"), inverseJoinColumns = @JoinColumn(name = "annotator_id"))
     private List<User> annotators = new ArrayList<>();
 
-    @Column(columnDefinition = "TEXT")
-    private String text1;
-
-    @Column(columnDefinition = "TEXT")
-    private String text2;
-
-    @ElementCollection
-    @CollectionTable(name = "task_annotations", joinColumns = @JoinColumn(name = "task_id"))
-    @Column(name = "annotation")
-    private List<String> annotations = new ArrayList<>(); // List of annotations from different annotators
+    // Texts live in the task_text side table (see TaskText), labels in the annotation
+    // table, one row per (task, annotator)
 
     @ElementCollection
     @CollectionTable(name = "task_completion_status", joinColumns = @JoinColumn(name = "task_id"))
@@ -77,13 +69,4 @@ public class Task {
             completionStatus.put(annotator, completed);
         }
     }
-
-    /**
-     * Adds an annotation from an annotator.
-     * 
-     * @param annotation The annotation value
-     */
-    public void addAnnotation(String annotation) {
-        annotations.add(annotation);
-    }
 }
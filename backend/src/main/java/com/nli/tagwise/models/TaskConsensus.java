@@ -0,0 +1,38 @@
+package com.nli.tagwise.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// Aggregated label of a task that reached its redundancy target, written in bulk by
+// ConsensusService. The label is a code of the dataset's LabelDictionary.
+@Setter
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "task_consensus", indexes = @Index(name = "idx_task_consensus_dataset", columnList = "dataset_id"))
+public class TaskConsensus {
+    @Id
+    @Column(name = "task_id")
+    private Long taskId;
+
+    @Column(name = "dataset_id", nullable = false)
+    private Long datasetId;
+
+    @Column(name = "label_code", nullable = false)
+    private short labelCode;
+
+    // Share of votes (majority) or posterior probability (Dawid-Skene) of the label
+    @Column(name = "confidence", nullable = false)
+    private double confidence;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "method", nullable = false, length = 16)
+    private ConsensusMethod method;
+
+    @Column(name = "computed_at", nullable = false)
+    private Instant computedAt;
+}
@@ -0,0 +1,26 @@
+package com.nli.tagwise.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Cold half of a task: the two texts, kept out of the task row so assignment, counting
+// and rebalancing scans stay narrow. Shares the task id; rows are written and read
+// through TaskTextService, long texts may be stored compressed (see TaskTextCodec).
+@Setter
+@Getter
+@NoArgsConstructor
+@Entity
+@Table(name = "task_text")
+public class TaskText {
+    @Id
+    @Column(name = "task_id")
+    private Long taskId;
+
+    @Column(columnDefinition = "TEXT")
+    private String text1;
+
+    @Column(columnDefinition = "TEXT")
+    private String text2;
+}
@@ -0,0 +1,22 @@
+package com.nli.tagwise.repository;
+
+import com.nli.tagwise.dto.TaskLabelView;
+import com.nli.tagwise.models.Annotation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface IAnnotationRepo extends JpaRepository<Annotation, Long> {
+
+        @Query("SELECT a.task.id AS taskId, a.annotator.Id AS annotatorId, a.labelCode AS labelCode " +
+                "FROM Annotation a WHERE a.task.id IN :taskIds ORDER BY a.id")
+        List<TaskLabelView> findLabelsByTaskIds(@Param("taskIds") Collection<Long> taskIds);
+
+        // Label distribution of a dataset, grouped on the integer code
+        @Query("SELECT a.labelCode, COUNT(a) FROM Annotation a WHERE a.dataset.id = :datasetId " +
+                "GROUP BY a.labelCode ORDER BY a.labelCode")
+        List<Object[]> countByLabelCode(@Param("datasetId") Long datasetId);
+}
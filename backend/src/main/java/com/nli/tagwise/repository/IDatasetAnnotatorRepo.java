@@ -1,9 +1,12 @@
 package com.nli.tagwise.repository;
 
+import com.nli.tagwise.dto.AnnotatorProgressView;
 import com.nli.tagwise.models.Dataset;
 import com.nli.tagwise.models.DatasetAnnotator;
 import com.nli.tagwise.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 
@@ -13,4 +16,19 @@ public interface IDatasetAnnotatorRepo extends JpaRepository<DatasetAnnotator, L
 
     void deleteByDataset(Dataset dataset);
     void deleteByDatasetAndAnnotator(Dataset dataset, User annotator);
+
+    // Assigned and completed counts of every annotator linked to the dataset,
+    // from a single GROUP BY over task_completion_status
+    @Query(value = "SELECT u.id AS annotatorId, u.first_name AS firstName, u.last_name AS lastName, u.email AS email, " +
+            "COALESCE(p.assigned, 0) AS assignedTasks, COALESCE(p.completed, 0) AS completedTasks " +
+            "FROM dataset_annotator da " +
+            "JOIN user u ON u.id = da.annotator_id " +
+            "LEFT JOIN (SELECT cs.annotator_id AS annotator_id, COUNT(*) AS assigned, " +
+            "SUM(CASE WHEN cs.completed THEN 1 ELSE 0 END) AS completed " +
+            "FROM task_completion_status cs JOIN task t ON t.id = cs.task_id " +
+            "WHERE t.dataset_id = :datasetId GROUP BY cs.annotator_id) p ON p.annotator_id = da.annotator_id " +
+            "WHERE da.dataset_id = :datasetId " +
+            "ORDER BY u.id",
+            nativeQuery = true)
+    List<AnnotatorProgressView> findAnnotatorProgress(@Param("datasetId") Long datasetId);
 }
\ No newline at end of file
@@ -1,7 +1,51 @@
 package com.nli.tagwise.repository;
 
+import com.nli.tagwise.dto.DatasetSummaryView;
 import com.nli.tagwise.models.Dataset;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
 
 public interface IDatasetRepo extends JpaRepository<Dataset, Long> {
-}
\ No newline at end of file
+
+    // Columns and grouping shared by findSummaries and findRecentSummaries; a task counts
+    // as completed when it has assignments and none of them is still open
+    String SUMMARY_SELECT = "SELECT d.id AS id, d.name AS name, d.description AS description, d.classes AS classes, " +
+            "COUNT(t.id) AS taskCount, " +
+            "COALESCE(SUM(CASE WHEN EXISTS (SELECT 1 FROM task_completion_status cs WHERE cs.task_id = t.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM task_completion_status cs WHERE cs.task_id = t.id " +
+            "AND (cs.completed = false OR cs.completed IS NULL)) THEN 1 ELSE 0 END), 0) AS completedTaskCount ";
+    String SUMMARY_GROUP = "LEFT JOIN task t ON t.dataset_id = d.id " +
+            "GROUP BY d.id, d.name, d.description, d.classes ";
+
+    // One page of datasets in id order, like the list always was, with task and
+    // completed-task counts. The page is cut before the join so only its tasks are grouped.
+    @Query(value = SUMMARY_SELECT +
+            "FROM (SELECT id, name, description, classes FROM dataset ORDER BY id LIMIT :limit OFFSET :offset) d " +
+            SUMMARY_GROUP +
+            "ORDER BY d.id",
+            nativeQuery = true)
+    List<DatasetSummaryView> findSummaries(@Param("limit") int limit, @Param("offset") long offset);
+
+    // The newest datasets first, same figures as findSummaries
+    @Query(value = SUMMARY_SELECT +
+            "FROM (SELECT id, name, description, classes FROM dataset ORDER BY id DESC LIMIT :limit) d " +
+            SUMMARY_GROUP +
+            "ORDER BY d.id DESC",
+            nativeQuery = true)
+    List<DatasetSummaryView> findRecentSummaries(@Param("limit") int limit);
+
+    // Same figures as findSummaries for a single dataset, counted through the dataset_id index
+    @Query(value = "SELECT d.id AS id, d.name AS name, d.description AS description, d.classes AS classes, " +
+            "(SELECT COUNT(*) FROM task t WHERE t.dataset_id = d.id) AS taskCount, " +
+            "(SELECT COUNT(*) FROM task t WHERE t.dataset_id = d.id " +
+            "AND EXISTS (SELECT 1 FROM task_completion_status cs WHERE cs.task_id = t.id) " +
+            "AND NOT EXISTS (SELECT 1 FROM task_completion_status cs WHERE cs.task_id = t.id " +
+            "AND (cs.completed = false OR cs.completed IS NULL))) AS completedTaskCount " +
+            "FROM dataset d WHERE d.id = :datasetId",
+            nativeQuery = true)
+    Optional<DatasetSummaryView> findSummaryById(@Param("datasetId") Long datasetId);
+}
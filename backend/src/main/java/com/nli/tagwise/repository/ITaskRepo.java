@@ -1,5 +1,7 @@
 package com.nli.tagwise.repository;
 
+import com.nli.tagwise.dto.AdminCountsView;
+import com.nli.tagwise.dto.WorkPackageTaskView;
 import com.nli.tagwise.models.Dataset;
 import com.nli.tagwise.models.Task;
 import com.nli.tagwise.models.User;
@@ -7,6 +9,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface ITaskRepo extends JpaRepository<Task, Long> {
@@ -14,6 +17,8 @@ public interface ITaskRepo extends JpaRepository<Task, Long> {
         // Find tasks by dataset
         List<Task> findByDataset(Dataset dataset);
 
+        long countByDataset(Dataset dataset);
+
         // Find tasks by annotator (two versions)
         @Query("SELECT t FROM Task t JOIN t.annotators a WHERE a = :annotator")
         List<Task> findByAnnotator(@Param("annotator") User annotator);
@@ -21,6 +26,12 @@ public interface ITaskRepo extends JpaRepository<Task, Long> {
         @Query("SELECT t FROM Task t JOIN t.annotators a WHERE a.Id = :annotatorId")
         List<Task> findByAnnotatorId(@Param("annotatorId") Long annotatorId);
 
+        // Tasks among the given ids still assigned to the annotator (delta sync)
+        @Query("SELECT t FROM Task t JOIN t.annotators a WHERE a.Id = :annotatorId AND t.id IN :ids ORDER BY t.id")
+        List<Task> findByAnnotatorIdAndIdIn(
+                @Param("annotatorId") Long annotatorId,
+                @Param("ids") Collection<Long> ids);
+
         // Find tasks by dataset and annotator
         @Query("SELECT t FROM Task t JOIN t.annotators a WHERE t.dataset = :dataset AND a = :annotator")
         List<Task> findByDatasetAndAnnotator(
@@ -44,6 +55,36 @@ public interface ITaskRepo extends JpaRepository<Task, Long> {
                 "WHERE KEY(cs) = :annotator AND VALUE(cs) = true")
         long countCompletedTasksByAnnotator(@Param("annotator") User annotator);
 
+        // A task is completed once every assigned annotator has flagged it, same rule
+        // as Task.isCompleted() but evaluated in the database
+        @Query(value = "SELECT COUNT(*) FROM (SELECT cs.task_id FROM task_completion_status cs " +
+                "GROUP BY cs.task_id HAVING SUM(CASE WHEN cs.completed THEN 0 ELSE 1 END) = 0) c",
+                nativeQuery = true)
+        long countCompletedTasks();
+
+        // All admin dashboard counters in a single round trip
+        @Query(value = "SELECT " +
+                "(SELECT COUNT(*) FROM task) AS taskCount, " +
+                "(SELECT COUNT(*) FROM (SELECT cs.task_id FROM task_completion_status cs " +
+                "GROUP BY cs.task_id HAVING SUM(CASE WHEN cs.completed THEN 0 ELSE 1 END) = 0) c) AS completedTaskCount, " +
+                "(SELECT COUNT(*) FROM user u WHERE u.role = 'ROLE_USER' AND u.deleted = false) AS annotatorCount, " +
+                "(SELECT COUNT(*) FROM dataset) AS datasetCount",
+                nativeQuery = true)
+        AdminCountsView getAdminCounts();
+
+        // Work package rows of an annotator: no entity graph, one row per assigned task.
+        // Texts may be compressed, see TaskTextCodec.decode
+        @Query(value = "SELECT t.id AS id, t.dataset_id AS datasetId, tt.text1 AS text1, tt.text2 AS text2, " +
+                "cs.completed AS completed, a.label_code AS labelCode " +
+                "FROM task_annotator ta " +
+                "JOIN task t ON t.id = ta.task_id " +
+                "LEFT JOIN task_text tt ON tt.task_id = ta.task_id " +
+                "LEFT JOIN task_completion_status cs ON cs.task_id = ta.task_id AND cs.annotator_id = ta.annotator_id " +
+                "LEFT JOIN annotation a ON a.task_id = ta.task_id AND a.annotator_id = ta.annotator_id " +
+                "WHERE ta.annotator_id = :annotatorId ORDER BY t.id",
+                nativeQuery = true)
+        List<WorkPackageTaskView> findWorkPackageRows(@Param("annotatorId") Long annotatorId);
+
         // Find tasks with fewer than 3 annotators
         @Query("SELECT t FROM Task t WHERE SIZE(t.annotators) < 3")
         List<Task> findTasksWithFewerThanThreeAnnotators();
@@ -3,8 +3,13 @@ package com.nli.tagwise.repository;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import com.nli.tagwise.dto.AnnotatorDto;
+import com.nli.tagwise.dto.AnnotatorSummaryDto;
 import com.nli.tagwise.models.Role;
 import com.nli.tagwise.models.User;
 
@@ -19,4 +24,28 @@ public interface IUserRepo extends JpaRepository<User, Long> {
     Long countByRoleAndDeletedFalse(Role roleUser);
 
     List<User> findTop3ByRoleAndDeletedFalseOrderByIdDesc(Role role);
+
+    // Users whose tokens must be rejected
+    @Query("SELECT u.Id FROM User u WHERE u.enabled IS NULL OR u.enabled = false OR u.deleted = true")
+    List<Long> findRevokedIds();
+
+    // Most recent annotators with their completed task count, in one query
+    @Query("SELECT new com.nli.tagwise.dto.AnnotatorDto(u.Id, CONCAT(u.firstName, ' ', u.lastName), u.email, " +
+            "(SELECT COUNT(t) FROM Task t JOIN t.completionStatus cs WHERE KEY(cs) = u AND VALUE(cs) = true)) " +
+            "FROM User u WHERE u.role = :role AND u.deleted = false ORDER BY u.Id DESC")
+    List<AnnotatorDto> findRecentAnnotatorDtos(@Param("role") Role role, Pageable pageable);
+
+    // Active annotators not linked to the dataset, as a NOT EXISTS anti-join.
+    // A null pattern disables the name/email search.
+    @Query("SELECT new com.nli.tagwise.dto.AnnotatorSummaryDto(u.Id, u.firstName, u.lastName, u.email, u.role, u.enabled) " +
+            "FROM User u WHERE u.role = :role AND u.deleted = false " +
+            "AND NOT EXISTS (SELECT 1 FROM DatasetAnnotator da WHERE da.dataset.id = :datasetId AND da.annotator = u) " +
+            "AND (:pattern IS NULL OR LOWER(u.email) LIKE :pattern " +
+            "OR LOWER(CONCAT(u.firstName, ' ', u.lastName)) LIKE :pattern) " +
+            "ORDER BY u.Id")
+    List<AnnotatorSummaryDto> findUnassignedAnnotators(
+            @Param("datasetId") Long datasetId,
+            @Param("role") Role role,
+            @Param("pattern") String pattern,
+            Pageable pageable);
 }
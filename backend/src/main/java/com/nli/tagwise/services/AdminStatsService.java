@@ -0,0 +1,98 @@
+package com.nli.tagwise.services;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.nli.tagwise.dto.AdminCountsView;
+import com.nli.tagwise.dto.AdminStatsDto;
+import com.nli.tagwise.events.DatasetUploadedEvent;
+import com.nli.tagwise.events.TaskAssignmentsChangedEvent;
+import com.nli.tagwise.models.Role;
+import com.nli.tagwise.repository.ITaskRepo;
+import com.nli.tagwise.repository.IUserRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Serves the admin dashboard from a cached snapshot. Once the snapshot is older than
+// the refresh interval the next read still gets the cached copy while a background
+// thread recomputes it, so concurrent admins never wait on the aggregate queries.
+// Uploads and assignment changes drop the snapshot. Submissions are left to the refresh
+// interval: a recompute per label would run the aggregate queries at the submission rate.
+@Service
+public class AdminStatsService {
+    private static final String SNAPSHOT_KEY = "dashboard";
+    private static final int RECENT_LIMIT = 3;
+
+    private final ITaskRepo taskRepo;
+    private final DatasetService datasetService;
+    private final IUserRepo userRepo;
+    private final ExecutorService refreshExecutor;
+    private final LoadingCache<String, AdminStatsDto> snapshots;
+
+    public AdminStatsService(
+            ITaskRepo taskRepo,
+            DatasetService datasetService,
+            IUserRepo userRepo,
+            @Value("${tagwise.admin-stats.refresh-after:5s}") Duration refreshAfter,
+            @Value("${tagwise.admin-stats.expire-after:1m}") Duration expireAfter) {
+        this.taskRepo = taskRepo;
+        this.datasetService = datasetService;
+        this.userRepo = userRepo;
+        this.refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "admin-stats-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.snapshots = Caffeine.newBuilder()
+                .maximumSize(1)
+                .refreshAfterWrite(refreshAfter)
+                .expireAfterWrite(expireAfter)
+                .executor(refreshExecutor)
+                .build(key -> computeStats());
+    }
+
+    public AdminStatsDto getStats() {
+        return snapshots.get(SNAPSHOT_KEY);
+    }
+
+    // Drops the snapshot so the next read recomputes it
+    public void invalidate() {
+        snapshots.invalidateAll();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDatasetUploaded(DatasetUploadedEvent event) {
+        invalidate();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssignmentsChanged(TaskAssignmentsChangedEvent event) {
+        invalidate();
+    }
+
+    AdminStatsDto computeStats() {
+        AdminCountsView counts = taskRepo.getAdminCounts();
+
+        return new AdminStatsDto(
+                counts.getTaskCount(),
+                counts.getCompletedTaskCount(),
+                counts.getAnnotatorCount(),
+                counts.getDatasetCount(),
+                datasetService.getRecentDatasets(RECENT_LIMIT),
+                userRepo.findRecentAnnotatorDtos(Role.ROLE_USER, PageRequest.of(0, RECENT_LIMIT)),
+                Instant.now());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,418 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.AgreementDto;
+import com.nli.tagwise.dto.PairAgreementDto;
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.models.LabelDictionary;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PreDestroy;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Inter-annotator agreement per dataset. Each loaded dataset keeps its ratings per task
+// and the sufficient statistics of the coefficients (Fleiss agreement sums, Krippendorff
+// coincidence matrix, Cohen contingency table per annotator pair) in primitive arrays.
+// A submission only replaces the contribution of its task, so reads cost O(labels²).
+@Service
+public class AgreementService {
+    private static final int FETCH_SIZE = 1000;
+    private static final int RELOAD_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IDatasetRepo datasetRepo;
+    private final ExecutorService recomputeExecutor;
+    private final int recomputeSlices;
+
+    private final Map<Long, DatasetAgreement> agreements = new ConcurrentHashMap<>();
+    // Events received while a dataset is being loaded, applied once it is installed
+    private final Map<Long, List<AnnotationSubmittedEvent>> loading = new HashMap<>();
+    private final Map<Long, CompletableFuture<DatasetAgreement>> recomputes = new ConcurrentHashMap<>();
+
+    public AgreementService(
+            JdbcTemplate jdbcTemplate,
+            IDatasetRepo datasetRepo,
+            @Value("${tagwise.agreement.recompute-threads:4}") int recomputeThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.datasetRepo = datasetRepo;
+        this.recomputeSlices = Math.max(1, recomputeThreads);
+        this.recomputeExecutor = Executors.newFixedThreadPool(recomputeSlices, r -> {
+            Thread thread = new Thread(r, "agreement-recompute");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        recomputeExecutor.shutdownNow();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnotationSubmitted(AnnotationSubmittedEvent event) {
+        DatasetAgreement agreement;
+        synchronized (loading) {
+            List<AnnotationSubmittedEvent> buffered = loading.get(event.getDatasetId());
+            if (buffered != null) {
+                buffered.add(event);
+                return;
+            }
+            agreement = agreements.get(event.getDatasetId());
+        }
+        // Datasets not loaded yet are read from the annotation table on first use
+        if (agreement != null) {
+            agreement.set(event.getTaskId(), event.getAnnotatorId(), event.getLabelCode());
+        }
+    }
+
+    public AgreementDto getAgreement(Long datasetId) {
+        DatasetAgreement agreement = agreements.get(datasetId);
+        if (agreement == null) {
+            agreement = recompute(datasetId);
+        }
+        return agreement.toDto(datasetId);
+    }
+
+    /**
+     * Rebuilds the agreement state of a dataset from the annotation table and replaces
+     * the incremental one. The dataset's task id range is split into slices read and
+     * aggregated in parallel, then merged.
+     */
+    public AgreementDto recomputeAgreement(Long datasetId) {
+        return recompute(datasetId).toDto(datasetId);
+    }
+
+    public void evict(Long datasetId) {
+        agreements.remove(datasetId);
+    }
+
+    // One recompute per dataset at a time: a second caller waits for the running one,
+    // otherwise both would share one event buffer and the later install would drop events
+    private DatasetAgreement recompute(Long datasetId) {
+        CompletableFuture<DatasetAgreement> mine = new CompletableFuture<>();
+        CompletableFuture<DatasetAgreement> running = recomputes.putIfAbsent(datasetId, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+        try {
+            DatasetAgreement agreement = rebuild(datasetId);
+            mine.complete(agreement);
+            return agreement;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            recomputes.remove(datasetId, mine);
+        }
+    }
+
+    private DatasetAgreement rebuild(Long datasetId) {
+        Dataset dataset = datasetRepo.findById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+        int labels = LabelDictionary.parse(dataset.getClasses()).size();
+
+        synchronized (loading) {
+            loading.put(datasetId, new ArrayList<>());
+        }
+        try {
+            DatasetAgreement agreement = load(datasetId, labels);
+
+            // Events buffered during the load may be older than what it read: their rows are
+            // read again instead of replaying their labels. Events arriving meanwhile keep
+            // buffering and are applied like live ones once installed.
+            List<AnnotationSubmittedEvent> touched;
+            synchronized (loading) {
+                touched = loading.put(datasetId, new ArrayList<>());
+            }
+            reload(datasetId, agreement, touched);
+
+            synchronized (loading) {
+                List<AnnotationSubmittedEvent> buffered = loading.remove(datasetId);
+                buffered.forEach(e -> agreement.set(e.getTaskId(), e.getAnnotatorId(), e.getLabelCode()));
+                agreements.put(datasetId, agreement);
+            }
+            return agreement;
+        } catch (RuntimeException e) {
+            synchronized (loading) {
+                loading.remove(datasetId);
+            }
+            throw e;
+        }
+    }
+
+    private void reload(Long datasetId, DatasetAgreement agreement, List<AnnotationSubmittedEvent> events) {
+        List<Long> taskIds = new ArrayList<>(new LinkedHashSet<>(
+                events.stream().map(AnnotationSubmittedEvent::getTaskId).toList()));
+        for (int from = 0; from < taskIds.size(); from += RELOAD_CHUNK) {
+            List<Long> chunk = taskIds.subList(from, Math.min(from + RELOAD_CHUNK, taskIds.size()));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(datasetId);
+            args.addAll(chunk);
+            jdbcTemplate.query(
+                    "SELECT task_id, annotator_id, label_code FROM annotation WHERE dataset_id = ? AND task_id IN ("
+                            + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    (ResultSet rs) -> {
+                        agreement.set(rs.getLong(1), rs.getLong(2), rs.getShort(3));
+                    },
+                    args.toArray());
+        }
+    }
+
+    private DatasetAgreement load(Long datasetId, int labels) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(task_id) AS lo, MAX(task_id) AS hi FROM annotation WHERE dataset_id = ?", datasetId);
+        DatasetAgreement merged = new DatasetAgreement(labels);
+        if (bounds.get("lo") == null) {
+            return merged;
+        }
+        long lo = ((Number) bounds.get("lo")).longValue();
+        long hi = ((Number) bounds.get("hi")).longValue();
+        long step = (hi - lo) / recomputeSlices + 1;
+
+        // Slices cover disjoint task ranges, so partial states merge by plain addition
+        List<Future<DatasetAgreement>> parts = new ArrayList<>();
+        for (long from = lo; from <= hi; from += step) {
+            long start = from;
+            long end = Math.min(hi, from + step - 1);
+            parts.add(recomputeExecutor.submit(() -> loadSlice(datasetId, labels, start, end)));
+        }
+        try {
+            for (Future<DatasetAgreement> part : parts) {
+                merged.merge(part.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Agreement recompute interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Agreement recompute failed", e.getCause());
+        }
+        return merged;
+    }
+
+    private DatasetAgreement loadSlice(Long datasetId, int labels, long fromTask, long toTask) {
+        DatasetAgreement slice = new DatasetAgreement(labels);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT task_id, annotator_id, label_code FROM annotation " +
+                            "WHERE dataset_id = ? AND task_id BETWEEN ? AND ?");
+            ps.setLong(1, datasetId);
+            ps.setLong(2, fromTask);
+            ps.setLong(3, toTask);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (ResultSet rs) -> {
+            slice.set(rs.getLong(1), rs.getLong(2), rs.getShort(3));
+        });
+        return slice;
+    }
+
+    private static final class DatasetAgreement {
+        private final int labels;
+        private final Map<Long, TaskRatings> tasks = new HashMap<>();
+
+        // Fleiss: items with at least two ratings, their ratings, per-label totals and
+        // the sum of per-item observed agreement
+        private long items;
+        private long ratings;
+        private final long[] labelTotals;
+        private double agreementSum;
+
+        // Krippendorff (nominal): coincidence matrix, labels x labels
+        private final double[] coincidence;
+
+        // Cohen: contingency table per annotator pair, labels of the lower id on rows
+        private final Map<AnnotatorPair, int[]> pairs = new HashMap<>();
+
+        private DatasetAgreement(int labels) {
+            this.labels = labels;
+            this.labelTotals = new long[labels];
+            this.coincidence = new double[labels * labels];
+        }
+
+        private synchronized void set(long taskId, long annotatorId, short code) {
+            if (code < 0 || code >= labels) return;
+            TaskRatings task = tasks.computeIfAbsent(taskId, id -> new TaskRatings());
+            contribute(task, -1);
+            task.set(annotatorId, code);
+            contribute(task, 1);
+        }
+
+        private void contribute(TaskRatings task, int sign) {
+            int m = task.size;
+            if (m < 2) return;
+
+            int[] counts = new int[labels];
+            for (int i = 0; i < m; i++) {
+                counts[task.codes[i]]++;
+            }
+            double sumSquares = 0;
+            for (int c = 0; c < labels; c++) {
+                sumSquares += (double) counts[c] * counts[c];
+                labelTotals[c] += sign * counts[c];
+            }
+            items += sign;
+            ratings += sign * m;
+            agreementSum += sign * (sumSquares - m) / (m * (m - 1.0));
+
+            // Ordered pairs of distinct ratings, each weighted 1 / (m - 1)
+            double weight = sign / (m - 1.0);
+            for (int c = 0; c < labels; c++) {
+                if (counts[c] == 0) continue;
+                for (int k = 0; k < labels; k++) {
+                    int pairsCK = counts[c] * (counts[k] - (c == k ? 1 : 0));
+                    if (pairsCK != 0) coincidence[c * labels + k] += weight * pairsCK;
+                }
+            }
+
+            for (int i = 0; i < m; i++) {
+                for (int j = i + 1; j < m; j++) {
+                    boolean iFirst = task.annotators[i] < task.annotators[j];
+                    AnnotatorPair pair = iFirst
+                            ? new AnnotatorPair(task.annotators[i], task.annotators[j])
+                            : new AnnotatorPair(task.annotators[j], task.annotators[i]);
+                    int row = iFirst ? task.codes[i] : task.codes[j];
+                    int col = iFirst ? task.codes[j] : task.codes[i];
+                    pairs.computeIfAbsent(pair, p -> new int[labels * labels])[row * labels + col] += sign;
+                }
+            }
+        }
+
+        private synchronized void merge(DatasetAgreement other) {
+            tasks.putAll(other.tasks);
+            items += other.items;
+            ratings += other.ratings;
+            agreementSum += other.agreementSum;
+            for (int c = 0; c < labels; c++) {
+                labelTotals[c] += other.labelTotals[c];
+            }
+            for (int i = 0; i < coincidence.length; i++) {
+                coincidence[i] += other.coincidence[i];
+            }
+            other.pairs.forEach((pair, table) -> {
+                int[] target = pairs.computeIfAbsent(pair, p -> new int[labels * labels]);
+                for (int i = 0; i < table.length; i++) {
+                    target[i] += table[i];
+                }
+            });
+        }
+
+        private synchronized AgreementDto toDto(Long datasetId) {
+            List<PairAgreementDto> pairResults = new ArrayList<>();
+            double kappaSum = 0;
+            int kappaCount = 0;
+            for (Map.Entry<AnnotatorPair, int[]> entry : pairs.entrySet()) {
+                int[] table = entry.getValue();
+                long shared = 0;
+                for (int cell : table) shared += cell;
+                if (shared == 0) continue;
+                Double kappa = cohenKappa(table, shared);
+                if (kappa != null) {
+                    kappaSum += kappa;
+                    kappaCount++;
+                }
+                pairResults.add(new PairAgreementDto(entry.getKey().first, entry.getKey().second, shared, kappa));
+            }
+            pairResults.sort(Comparator.comparing(PairAgreementDto::getAnnotatorId)
+                    .thenComparing(PairAgreementDto::getOtherAnnotatorId));
+
+            return new AgreementDto(
+                    datasetId,
+                    items,
+                    ratings,
+                    fleissKappa(),
+                    krippendorffAlpha(),
+                    kappaCount > 0 ? kappaSum / kappaCount : null,
+                    pairResults);
+        }
+
+        private Double fleissKappa() {
+            if (items == 0) return null;
+            double observed = agreementSum / items;
+            double expected = 0;
+            for (long total : labelTotals) {
+                double p = (double) total / ratings;
+                expected += p * p;
+            }
+            return expected < 1 ? (observed - expected) / (1 - expected) : null;
+        }
+
+        private Double krippendorffAlpha() {
+            double[] marginals = new double[labels];
+            double n = 0;
+            double disagreement = 0;
+            for (int c = 0; c < labels; c++) {
+                for (int k = 0; k < labels; k++) {
+                    double o = coincidence[c * labels + k];
+                    marginals[c] += o;
+                    n += o;
+                    if (c != k) disagreement += o;
+                }
+            }
+            double expected = 0;
+            for (int c = 0; c < labels; c++) {
+                for (int k = 0; k < labels; k++) {
+                    if (c != k) expected += marginals[c] * marginals[k];
+                }
+            }
+            if (n <= 1 || expected == 0) return null;
+            return 1 - (n - 1) * disagreement / expected;
+        }
+
+        private Double cohenKappa(int[] table, long shared) {
+            double observed = 0;
+            double expected = 0;
+            for (int c = 0; c < labels; c++) {
+                observed += table[c * labels + c];
+                long row = 0;
+                long col = 0;
+                for (int k = 0; k < labels; k++) {
+                    row += table[c * labels + k];
+                    col += table[k * labels + c];
+                }
+                expected += (double) row * col;
+            }
+            observed /= shared;
+            expected /= (double) shared * shared;
+            return expected < 1 ? (observed - expected) / (1 - expected) : null;
+        }
+    }
+
+    // Ratings of one task, usually a handful: parallel arrays instead of a map
+    private static final class TaskRatings {
+        private long[] annotators = new long[4];
+        private short[] codes = new short[4];
+        private int size;
+
+        private void set(long annotatorId, short code) {
+            for (int i = 0; i < size; i++) {
+                if (annotators[i] == annotatorId) {
+                    codes[i] = code;
+                    return;
+                }
+            }
+            if (size == annotators.length) {
+                annotators = Arrays.copyOf(annotators, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            annotators[size] = annotatorId;
+            codes[size] = code;
+            size++;
+        }
+    }
+
+    private record AnnotatorPair(long first, long second) {
+    }
+}
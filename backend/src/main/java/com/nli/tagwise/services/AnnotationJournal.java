@@ -0,0 +1,309 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.PendingAnnotation;
+import com.nli.tagwise.dto.SubmissionResultDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Optional write-behind mode for annotation submissions. A submission is acknowledged once
+// its line is appended to a local journal and forced to disk; appends are written under a
+// lock but forced outside it, one force covering every append made since the last one. A
+// background thread group-commits queued entries to the database. The journal is split into
+// segment files (<journal>.<n>): each flush round starts a new segment, and a segment is
+// deleted once all of its entries are stored. Entries still in the journal at startup are
+// replayed; a replayed entry never overwrites a newer stored label.
+@Service
+public class AnnotationJournal {
+    private static final int MAX_SUBMISSION_ID_LENGTH = 64;
+
+    private final AnnotationService annotationService;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration flushInterval;
+    private final int batchSize;
+
+    // Entries appended to the journal but not yet stored, with the segment holding them.
+    // Guarded by "this" like the channel and the counters below.
+    private final Deque<Journaled> queue = new ArrayDeque<>();
+    private FileChannel channel;
+    private long segment;
+    private long segmentEntries;
+    private long oldestSegment;
+    private long appended;
+    // Appends known to be on disk; only advanced while holding syncLock
+    private volatile long durable;
+    // Taken before "this", by whoever forces the journal for everybody waiting
+    private final Object syncLock = new Object();
+    private ScheduledExecutorService flusher;
+
+    private record Journaled(PendingAnnotation entry, long segment) {
+    }
+
+    public AnnotationJournal(
+            AnnotationService annotationService,
+            @Value("${tagwise.annotations.write-behind.enabled:false}") boolean enabled,
+            @Value("${tagwise.annotations.write-behind.journal:annotation-journal.log}") Path path,
+            @Value("${tagwise.annotations.write-behind.flush-interval:500ms}") Duration flushInterval,
+            @Value("${tagwise.annotations.write-behind.batch-size:5000}") int batchSize) {
+        this.annotationService = annotationService;
+        this.enabled = enabled;
+        this.path = path;
+        this.flushInterval = flushInterval;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    void open() throws IOException {
+        if (!enabled) return;
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        // A single-file journal of an older version becomes the first segment
+        if (Files.exists(path)) {
+            Files.move(path, segmentPath(0), StandardCopyOption.ATOMIC_MOVE);
+        }
+        List<Long> segments = existingSegments();
+        for (long id : segments) {
+            for (String line : Files.readAllLines(segmentPath(id), StandardCharsets.UTF_8)) {
+                PendingAnnotation entry = parse(line);
+                // A torn last line was never acknowledged, so it is safe to drop
+                if (entry != null) queue.add(new Journaled(entry, id));
+            }
+        }
+        if (!queue.isEmpty()) {
+            System.out.println("Replaying " + queue.size() + " journaled annotations.");
+        }
+        oldestSegment = segments.isEmpty() ? 1 : segments.get(0);
+        segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1) + 1;
+        channel = openSegment(segment);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "annotation-journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushSafely, 0, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Validates a submission, appends it to the journal and returns once it is on disk.
+     * The stored version is not known yet, so the result has no version.
+     */
+    public SubmissionResultDto submit(Long taskId, Long annotatorId, String label, String submissionId) {
+        if (submissionId != null && (submissionId.length() > MAX_SUBMISSION_ID_LENGTH
+                || !submissionId.chars().allMatch(c -> c > 0x20 && c < 0x7f))) {
+            throw new IllegalArgumentException("Invalid submission id");
+        }
+        PendingAnnotation entry = annotationService.prepare(taskId, annotatorId, label, submissionId);
+        awaitDurable(append(entry));
+        return new SubmissionResultDto(taskId, annotatorId, label, null, entry.getSubmissionId());
+    }
+
+    // Returns the sequence number to wait for
+    private synchronized long append(PendingAnnotation entry) {
+        ByteBuffer line = ByteBuffer.wrap(format(entry).getBytes(StandardCharsets.UTF_8));
+        try {
+            while (line.hasRemaining()) {
+                channel.write(line);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write annotation journal", e);
+        }
+        queue.add(new Journaled(entry, segment));
+        segmentEntries++;
+        return ++appended;
+    }
+
+    // The first waiter forces everything appended so far, the ones behind it find their
+    // append already covered and return without forcing again
+    private void awaitDurable(long sequence) {
+        synchronized (syncLock) {
+            if (durable >= sequence) return;
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = appended;
+                current = channel;
+            }
+            try {
+                current.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not write annotation journal", e);
+            }
+            durable = target;
+        }
+    }
+
+    /**
+     * Applies queued entries in batches of at most batch-size, one transaction per batch.
+     * Entries leave the queue only after their batch is committed.
+     *
+     * @return The number of entries applied
+     */
+    public int flush() {
+        roll();
+        int applied = 0;
+        while (true) {
+            List<PendingAnnotation> batch;
+            synchronized (this) {
+                batch = new ArrayList<>(Math.min(queue.size(), batchSize));
+                for (Journaled queued : queue) {
+                    if (batch.size() == batchSize) break;
+                    batch.add(queued.entry());
+                }
+            }
+            if (batch.isEmpty()) break;
+
+            annotationService.applyPending(batch);
+            applied += batch.size();
+
+            synchronized (this) {
+                for (int i = 0; i < batch.size(); i++) {
+                    queue.poll();
+                }
+                // Segments before the one holding the oldest queued entry are fully stored
+                deleteSegmentsBefore(queue.isEmpty() ? segment : queue.peek().segment());
+            }
+        }
+        return applied;
+    }
+
+    // Starts a new segment, so the entries of this round can be deleted with their files
+    private void roll() {
+        synchronized (syncLock) {
+            synchronized (this) {
+                if (segmentEntries == 0) return;
+                try {
+                    // Appends still waiting for a force would otherwise force the new segment
+                    channel.force(false);
+                    durable = appended;
+                    FileChannel next = openSegment(segment + 1);
+                    channel.close();
+                    channel = next;
+                    segment++;
+                    segmentEntries = 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Could not roll annotation journal", e);
+                }
+            }
+        }
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            // Entries stay queued and journaled, the next round retries them
+            System.err.println("Annotation journal flush failed: " + e.getMessage());
+        }
+    }
+
+    private void deleteSegmentsBefore(long keep) {
+        for (; oldestSegment < keep; oldestSegment++) {
+            try {
+                Files.deleteIfExists(segmentPath(oldestSegment));
+            } catch (IOException e) {
+                // Its entries are stored, a later replay of them is harmless (see applyPending)
+                System.err.println("Could not delete annotation journal segment: " + e.getMessage());
+            }
+        }
+    }
+
+    private Path segmentPath(long id) {
+        return path.resolveSibling(path.getFileName() + "." + id);
+    }
+
+    private FileChannel openSegment(long id) throws IOException {
+        return FileChannel.open(segmentPath(id), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private List<Long> existingSegments() throws IOException {
+        String prefix = path.getFileName() + ".";
+        Path dir = path.toAbsolutePath().getParent();
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, prefix + "*")) {
+            for (Path file : files) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    ids.add(Long.parseLong(suffix));
+                }
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    public synchronized int getPendingCount() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (!enabled) return;
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Whatever cannot be stored now stays in the journal for the next start
+        flushSafely();
+        synchronized (this) {
+            channel.close();
+            if (queue.isEmpty()) {
+                deleteSegmentsBefore(segment + 1);
+            }
+        }
+    }
+
+    private static String format(PendingAnnotation entry) {
+        return entry.getTaskId() + "\t" + entry.getAnnotatorId() + "\t" + entry.getDatasetId() + "\t"
+                + entry.getLabelCode() + "\t" + entry.getSubmissionId() + "\t"
+                + entry.getSubmittedAt().toEpochMilli() + "\n";
+    }
+
+    private static PendingAnnotation parse(String line) {
+        String[] fields = line.split("\t");
+        if (fields.length != 6) return null;
+        try {
+            return new PendingAnnotation(
+                    Long.parseLong(fields[0]),
+                    Long.parseLong(fields[1]),
+                    Long.parseLong(fields[2]),
+                    Short.parseShort(fields[3]),
+                    fields[4],
+                    Instant.ofEpochMilli(Long.parseLong(fields[5])));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
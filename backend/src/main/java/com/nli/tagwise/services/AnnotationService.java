@@ -0,0 +1,493 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.custom.AnnotationConflictException;
+import com.nli.tagwise.dto.BatchItemResultDto;
+import com.nli.tagwise.dto.BatchSubmissionDto;
+import com.nli.tagwise.dto.LabelCountDto;
+import com.nli.tagwise.dto.PendingAnnotation;
+import com.nli.tagwise.dto.SubmissionResultDto;
+import com.nli.tagwise.dto.TaskLabelView;
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.models.LabelDictionary;
+import com.nli.tagwise.models.Task;
+import com.nli.tagwise.repository.IAnnotationRepo;
+import com.nli.tagwise.repository.IDatasetRepo;
+import com.nli.tagwise.repository.ITaskRepo;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Owns the annotation table: encoding labels against the dataset dictionary,
+// recording one row per (task, annotator) and reading labels back as text
+@Service
+public class AnnotationService {
+    private static final int IN_CHUNK = 1000;
+
+    private final IAnnotationRepo annotationRepo;
+    private final IDatasetRepo datasetRepo;
+    private final ITaskRepo taskRepo;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AnnotatorChangeLog changeLog;
+    // Set when task_annotations still holds labels that could not be attributed to an annotator
+    private volatile boolean legacyLabels;
+
+    public AnnotationService(IAnnotationRepo annotationRepo, IDatasetRepo datasetRepo, ITaskRepo taskRepo,
+            JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher, AnnotatorChangeLog changeLog) {
+        this.annotationRepo = annotationRepo;
+        this.datasetRepo = datasetRepo;
+        this.taskRepo = taskRepo;
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+        this.changeLog = changeLog;
+    }
+
+    public LabelDictionary getLabelDictionary(Dataset dataset) {
+        return LabelDictionary.parse(dataset.getClasses());
+    }
+
+    /**
+     * Records the label of an annotator on a task without loading the task or its
+     * collections. The annotation row is written with a single upsert on the
+     * (task_id, annotator_id) key and its version bumped; a retry carrying the same
+     * submission id is recognised and leaves the row untouched. Only the latest stored
+     * submission id is remembered: a late retry of an older submission, once a newer one
+     * was stored, writes again. Clients that retry after a newer write must send
+     * expectedVersion.
+     *
+     * @param submissionId    Idempotency key chosen by the client, generated when null
+     * @param expectedVersion When set, the write only applies if the stored version matches;
+     *                        0 only creates the annotation and conflicts if one exists
+     * @return The stored state of the annotation
+     */
+    @Transactional
+    public SubmissionResultDto submit(Long taskId, Long annotatorId, String label, String submissionId,
+            Integer expectedVersion) {
+        Map<String, Object> assignment = findAssignment(taskId, annotatorId);
+        Long datasetId = ((Number) assignment.get("dataset_id")).longValue();
+        LabelDictionary dictionary = LabelDictionary.parse((String) assignment.get("classes"));
+        short code = dictionary.encode(label);
+        String key = submissionId != null && !submissionId.isBlank() ? submissionId : UUID.randomUUID().toString();
+        Timestamp now = Timestamp.from(Instant.now());
+
+        if (expectedVersion == null) {
+            upsert(taskId, annotatorId, datasetId, code, key, now);
+        } else if (expectedVersion == 0) {
+            // Create only: an existing row is kept and reported as a conflict below,
+            // unless it was written by this same submission
+            try {
+                jdbcTemplate.update(
+                        "INSERT INTO annotation (task_id, annotator_id, dataset_id, label_code, version, submission_id, updated_at) " +
+                                "VALUES (?, ?, ?, ?, 1, ?, ?)",
+                        taskId, annotatorId, datasetId, code, key, now);
+            } catch (DuplicateKeyException e) {
+                // Checked against the stored submission id below
+            }
+        } else {
+            jdbcTemplate.update(
+                    "UPDATE annotation SET label_code = ?, updated_at = ?, version = version + 1, submission_id = ? " +
+                            "WHERE task_id = ? AND annotator_id = ? AND version = ? " +
+                            "AND (submission_id IS NULL OR submission_id <> ?)",
+                    code, now, key, taskId, annotatorId, expectedVersion, key);
+        }
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT label_code, version, submission_id FROM annotation WHERE task_id = ? AND annotator_id = ?",
+                taskId, annotatorId);
+        // No row means an expected version for an annotation that was never created
+        if (rows.isEmpty()) {
+            throw new AnnotationConflictException("Annotation does not exist yet, submit it with expectedVersion 0");
+        }
+        Map<String, Object> stored = rows.get(0);
+        if (!key.equals(stored.get("submission_id"))) {
+            throw new AnnotationConflictException("Annotation was changed by another submission");
+        }
+
+        jdbcTemplate.update(
+                "UPDATE task_completion_status SET completed = true WHERE task_id = ? AND annotator_id = ?",
+                taskId, annotatorId);
+        changeLog.recordLabeled(Collections.singletonList(new Object[] { taskId, annotatorId, datasetId }));
+        eventPublisher.publishEvent(new AnnotationSubmittedEvent(datasetId, taskId, annotatorId,
+                ((Number) stored.get("label_code")).shortValue()));
+
+        return new SubmissionResultDto(
+                taskId,
+                annotatorId,
+                dictionary.decode(((Number) stored.get("label_code")).intValue()),
+                ((Number) stored.get("version")).intValue(),
+                key);
+    }
+
+    /**
+     * Validates a submission the way {@link #submit} does, without writing anything.
+     * Used by the write-behind journal, which applies the result later with {@link #applyPending}.
+     */
+    @Transactional(readOnly = true)
+    public PendingAnnotation prepare(Long taskId, Long annotatorId, String label, String submissionId) {
+        Map<String, Object> assignment = findAssignment(taskId, annotatorId);
+        LabelDictionary dictionary = LabelDictionary.parse((String) assignment.get("classes"));
+        String key = submissionId != null && !submissionId.isBlank() ? submissionId : UUID.randomUUID().toString();
+        return new PendingAnnotation(
+                taskId,
+                annotatorId,
+                ((Number) assignment.get("dataset_id")).longValue(),
+                dictionary.encode(label),
+                key,
+                Instant.now());
+    }
+
+    /**
+     * Writes journaled submissions with one JDBC batch of upserts and one batch of
+     * completion updates. An entry only replaces a stored label that is not newer than
+     * it, so replaying an entry after a later synchronous write keeps the later label.
+     * Events and change log rows are emitted for the entries that were stored.
+     */
+    @Transactional
+    public void applyPending(List<PendingAnnotation> pending) {
+        if (pending.isEmpty()) return;
+        List<Object[]> upserts = new ArrayList<>(pending.size());
+        List<Object[]> completions = new ArrayList<>(pending.size());
+        Set<Long> taskIds = new LinkedHashSet<>();
+        for (PendingAnnotation p : pending) {
+            upserts.add(new Object[] { p.getTaskId(), p.getAnnotatorId(), p.getDatasetId(), p.getLabelCode(),
+                    p.getSubmissionId(), Timestamp.from(p.getSubmittedAt()) });
+            completions.add(new Object[] { p.getTaskId(), p.getAnnotatorId() });
+            taskIds.add(p.getTaskId());
+        }
+        jdbcTemplate.batchUpdate(PENDING_UPSERT_SQL, upserts);
+        jdbcTemplate.batchUpdate(
+                "UPDATE task_completion_status SET completed = true WHERE task_id = ? AND annotator_id = ?",
+                completions);
+
+        // Submission ids now stored, to tell applied entries from superseded ones
+        Set<String> stored = new HashSet<>();
+        forEachChunk(new ArrayList<>(taskIds), chunk -> jdbcTemplate.query(
+                "SELECT task_id, annotator_id, submission_id FROM annotation " +
+                        "WHERE task_id IN (" + placeholders(chunk.size()) + ")",
+                (ResultSet rs) -> {
+                    stored.add(rs.getLong(1) + ":" + rs.getLong(2) + ":" + rs.getString(3));
+                },
+                chunk.toArray()));
+
+        List<Object[]> labeled = new ArrayList<>(pending.size());
+        for (PendingAnnotation p : pending) {
+            if (!stored.contains(p.getTaskId() + ":" + p.getAnnotatorId() + ":" + p.getSubmissionId())) continue;
+            labeled.add(new Object[] { p.getTaskId(), p.getAnnotatorId(), p.getDatasetId() });
+            eventPublisher.publishEvent(new AnnotationSubmittedEvent(p.getDatasetId(), p.getTaskId(),
+                    p.getAnnotatorId(), p.getLabelCode()));
+        }
+        changeLog.recordLabeled(labeled);
+    }
+
+    private Map<String, Object> findAssignment(Long taskId, Long annotatorId) {
+        List<Map<String, Object>> assignment = jdbcTemplate.queryForList(
+                "SELECT t.dataset_id AS dataset_id, d.classes AS classes FROM task t " +
+                        "JOIN dataset d ON d.id = t.dataset_id " +
+                        "JOIN task_annotator ta ON ta.task_id = t.id AND ta.annotator_id = ? " +
+                        "WHERE t.id = ?",
+                annotatorId, taskId);
+        if (assignment.isEmpty()) {
+            if (!taskRepo.existsById(taskId)) {
+                throw new IllegalArgumentException("Task not found");
+            }
+            throw new IllegalArgumentException("Annotator not assigned to this task");
+        }
+        return assignment.get(0);
+    }
+
+    // submission_id is assigned last: MariaDB evaluates the assignments left to right,
+    // so the earlier CASEs still compare against the stored submission id
+    private static final String UPSERT_SQL =
+            "INSERT INTO annotation (task_id, annotator_id, dataset_id, label_code, version, submission_id, updated_at) " +
+                    "VALUES (?, ?, ?, ?, 1, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "label_code = CASE WHEN submission_id = VALUES(submission_id) THEN label_code ELSE VALUES(label_code) END, " +
+                    "updated_at = CASE WHEN submission_id = VALUES(submission_id) THEN updated_at ELSE VALUES(updated_at) END, " +
+                    "version = CASE WHEN submission_id = VALUES(submission_id) THEN version ELSE version + 1 END, " +
+                    "submission_id = VALUES(submission_id)";
+
+    // UPSERT_SQL for journaled entries, whose updated_at is the original submission time: a
+    // stored row that is newer is kept. updated_at is assigned before submission_id, so once
+    // it is replaced the submission_id CASE no longer sees a newer stored row.
+    private static final String PENDING_KEEP = "submission_id = VALUES(submission_id) OR updated_at > VALUES(updated_at)";
+    private static final String PENDING_UPSERT_SQL =
+            "INSERT INTO annotation (task_id, annotator_id, dataset_id, label_code, version, submission_id, updated_at) " +
+                    "VALUES (?, ?, ?, ?, 1, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "label_code = CASE WHEN " + PENDING_KEEP + " THEN label_code ELSE VALUES(label_code) END, " +
+                    "version = CASE WHEN " + PENDING_KEEP + " THEN version ELSE version + 1 END, " +
+                    "updated_at = CASE WHEN " + PENDING_KEEP + " THEN updated_at ELSE VALUES(updated_at) END, " +
+                    "submission_id = CASE WHEN " + PENDING_KEEP + " THEN submission_id ELSE VALUES(submission_id) END";
+
+    private void upsert(Long taskId, Long annotatorId, Long datasetId, short code, String key, Timestamp now) {
+        jdbcTemplate.update(UPSERT_SQL, taskId, annotatorId, datasetId, code, key, now);
+    }
+
+    /**
+     * Records many labels of one annotator in a single transaction. Assignment is checked
+     * for the whole batch with one set query, accepted items are written with one JDBC
+     * batch of upserts and read back with one query. Invalid items are reported, not thrown.
+     *
+     * @return One result per submitted item, in the submitted order
+     */
+    @Transactional
+    public List<BatchItemResultDto> submitBatch(Long annotatorId, List<BatchSubmissionDto.Item> items) {
+        List<BatchItemResultDto> results = new ArrayList<>(items.size());
+        if (items.isEmpty()) {
+            return results;
+        }
+
+        Set<Long> taskIds = new LinkedHashSet<>();
+        for (BatchSubmissionDto.Item item : items) {
+            if (item.getTaskId() != null) taskIds.add(item.getTaskId());
+        }
+
+        // task id -> (dataset id, dictionary) for the tasks this annotator is assigned to
+        Map<Long, Long> datasetByTask = new HashMap<>();
+        Map<Long, LabelDictionary> dictionaries = new HashMap<>();
+        forEachChunk(new ArrayList<>(taskIds), chunk -> jdbcTemplate.query(
+                "SELECT t.id, t.dataset_id, d.classes FROM task t " +
+                        "JOIN dataset d ON d.id = t.dataset_id " +
+                        "JOIN task_annotator ta ON ta.task_id = t.id AND ta.annotator_id = ? " +
+                        "WHERE t.id IN (" + placeholders(chunk.size()) + ")",
+                (ResultSet rs) -> {
+                    long datasetId = rs.getLong(2);
+                    datasetByTask.put(rs.getLong(1), datasetId);
+                    if (!dictionaries.containsKey(datasetId)) {
+                        dictionaries.put(datasetId, LabelDictionary.parse(rs.getString(3)));
+                    }
+                },
+                prepend(annotatorId, chunk)));
+
+        Timestamp now = Timestamp.from(Instant.now());
+        Set<Long> seen = new HashSet<>();
+        Map<Long, String> keys = new HashMap<>();
+        List<Object[]> upserts = new ArrayList<>();
+        for (BatchSubmissionDto.Item item : items) {
+            Long taskId = item.getTaskId();
+            String key = item.getSubmissionId() != null && !item.getSubmissionId().isBlank()
+                    ? item.getSubmissionId()
+                    : UUID.randomUUID().toString();
+            if (taskId == null) {
+                results.add(BatchItemResultDto.rejected(null, key, "Missing task id"));
+                continue;
+            }
+            if (!seen.add(taskId)) {
+                results.add(BatchItemResultDto.rejected(taskId, key, "Duplicate task in batch"));
+                continue;
+            }
+            Long datasetId = datasetByTask.get(taskId);
+            if (datasetId == null) {
+                results.add(BatchItemResultDto.rejected(taskId, key, "Task not found or annotator not assigned"));
+                continue;
+            }
+            try {
+                short code = dictionaries.get(datasetId).encode(item.getLabel());
+                upserts.add(new Object[] { taskId, annotatorId, datasetId, code, key, now });
+                keys.put(taskId, key);
+                results.add(new BatchItemResultDto(taskId, true, null, null, key, null));
+            } catch (IllegalArgumentException e) {
+                results.add(BatchItemResultDto.rejected(taskId, key, e.getMessage()));
+            }
+        }
+        if (upserts.isEmpty()) {
+            return results;
+        }
+
+        jdbcTemplate.batchUpdate(UPSERT_SQL, upserts);
+
+        // Read back the stored state; a different submission id means a concurrent write won
+        Map<Long, Object[]> stored = new HashMap<>();
+        forEachChunk(new ArrayList<>(keys.keySet()), chunk -> jdbcTemplate.query(
+                "SELECT task_id, label_code, version, submission_id FROM annotation " +
+                        "WHERE annotator_id = ? AND task_id IN (" + placeholders(chunk.size()) + ")",
+                (ResultSet rs) -> {
+                    stored.put(rs.getLong(1), new Object[] { rs.getInt(2), rs.getInt(3), rs.getString(4) });
+                },
+                prepend(annotatorId, chunk)));
+
+        List<Object[]> completions = new ArrayList<>();
+        List<Object[]> labeled = new ArrayList<>();
+        for (BatchItemResultDto result : results) {
+            if (!result.isAccepted()) continue;
+            Object[] row = stored.get(result.getTaskId());
+            if (row == null || !result.getSubmissionId().equals(row[2])) {
+                result.setAccepted(false);
+                result.setError("Annotation was changed by another submission");
+                continue;
+            }
+            result.setLabel(dictionaries.get(datasetByTask.get(result.getTaskId())).decode((Integer) row[0]));
+            result.setVersion((Integer) row[1]);
+            completions.add(new Object[] { result.getTaskId(), annotatorId });
+            labeled.add(new Object[] { result.getTaskId(), annotatorId, datasetByTask.get(result.getTaskId()) });
+            eventPublisher.publishEvent(new AnnotationSubmittedEvent(datasetByTask.get(result.getTaskId()),
+                    result.getTaskId(), annotatorId, ((Integer) row[0]).shortValue()));
+        }
+        jdbcTemplate.batchUpdate(
+                "UPDATE task_completion_status SET completed = true WHERE task_id = ? AND annotator_id = ?",
+                completions);
+        changeLog.recordLabeled(labeled);
+        return results;
+    }
+
+    private static void forEachChunk(List<Long> ids, Consumer<List<Long>> action) {
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            action.accept(ids.subList(from, Math.min(from + IN_CHUNK, ids.size())));
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(",", Collections.nCopies(count, "?"));
+    }
+
+    private static Object[] prepend(Object first, List<Long> rest) {
+        Object[] args = new Object[rest.size() + 1];
+        args[0] = first;
+        for (int i = 0; i < rest.size(); i++) {
+            args[i + 1] = rest.get(i);
+        }
+        return args;
+    }
+
+    /**
+     * Decoded labels of the given tasks, in submission order. Legacy labels without an
+     * annotator (see {@link #migrateLegacyAnnotations}) come first.
+     *
+     * @return Labels keyed by task id; tasks without annotations map to an empty list
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, List<String>> getLabelsByTask(Collection<Task> tasks) {
+        Map<Long, List<String>> labels = new HashMap<>();
+        Map<Long, LabelDictionary> dictionaries = new HashMap<>();
+        Map<Long, Long> datasetByTask = new HashMap<>();
+        for (Task task : tasks) {
+            labels.put(task.getId(), new ArrayList<>());
+            datasetByTask.put(task.getId(), task.getDataset().getId());
+            dictionaries.computeIfAbsent(task.getDataset().getId(), id -> getLabelDictionary(task.getDataset()));
+        }
+
+        List<Long> taskIds = new ArrayList<>(labels.keySet());
+        for (int from = 0; from < taskIds.size(); from += IN_CHUNK) {
+            List<Long> chunk = taskIds.subList(from, Math.min(from + IN_CHUNK, taskIds.size()));
+            if (legacyLabels) {
+                jdbcTemplate.query(
+                        "SELECT task_id, annotation FROM task_annotations WHERE task_id IN (" + placeholders(chunk.size()) + ")",
+                        (ResultSet rs) -> {
+                            labels.get(rs.getLong(1)).add(rs.getString(2));
+                        },
+                        chunk.toArray());
+            }
+            for (TaskLabelView row : annotationRepo.findLabelsByTaskIds(chunk)) {
+                LabelDictionary dictionary = dictionaries.get(datasetByTask.get(row.getTaskId()));
+                labels.get(row.getTaskId()).add(dictionary.decode(row.getLabelCode()));
+            }
+        }
+        return labels;
+    }
+
+    /**
+     * Labels left in the legacy task_annotations table for the tasks of a dataset, read-only.
+     *
+     * @return Label texts keyed by task id, empty once every legacy label was migrated
+     */
+    public Map<Long, List<String>> getLegacyLabels(Long datasetId) {
+        Map<Long, List<String>> labels = new HashMap<>();
+        if (!legacyLabels) return labels;
+        jdbcTemplate.query(
+                "SELECT ta.task_id, ta.annotation FROM task_annotations ta " +
+                        "JOIN task t ON t.id = ta.task_id WHERE t.dataset_id = ?",
+                (ResultSet rs) -> {
+                    labels.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getString(2));
+                },
+                datasetId);
+        return labels;
+    }
+
+    @Transactional(readOnly = true)
+    public List<LabelCountDto> countLabels(Long datasetId) {
+        Dataset dataset = datasetRepo.findById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+        LabelDictionary dictionary = getLabelDictionary(dataset);
+
+        long[] counts = new long[dictionary.size()];
+        for (Object[] row : annotationRepo.countByLabelCode(datasetId)) {
+            int code = ((Number) row[0]).intValue();
+            if (code < counts.length) {
+                counts[code] = ((Number) row[1]).longValue();
+            }
+        }
+        List<LabelCountDto> result = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            result.add(new LabelCountDto(dictionary.decode(code), counts[code]));
+        }
+        return result;
+    }
+
+    /**
+     * Moves rows of the old task_annotations collection into the annotation table when
+     * the annotator can be identified, i.e. the task has exactly one label and exactly
+     * one annotator who completed it. Other legacy rows stay in task_annotations and are
+     * still returned, without annotator, by {@link #getLabelsByTask} and {@link #getLegacyLabels}.
+     *
+     * @return The number of migrated annotations
+     */
+    @Transactional
+    public int migrateLegacyAnnotations() {
+        List<Map<String, Object>> rows;
+        try {
+            rows = jdbcTemplate.queryForList(
+                    "SELECT ta.task_id AS task_id, cs.annotator_id AS annotator_id, t.dataset_id AS dataset_id, " +
+                            "ta.annotation AS annotation, d.classes AS classes " +
+                            "FROM task_annotations ta " +
+                            "JOIN task t ON t.id = ta.task_id " +
+                            "JOIN dataset d ON d.id = t.dataset_id " +
+                            "JOIN task_completion_status cs ON cs.task_id = ta.task_id AND cs.completed = true " +
+                            "WHERE ta.task_id IN (SELECT task_id FROM task_annotations GROUP BY task_id HAVING COUNT(*) = 1) " +
+                            "AND ta.task_id IN (SELECT task_id FROM task_completion_status WHERE completed = true " +
+                            "GROUP BY task_id HAVING COUNT(*) = 1) " +
+                            "AND NOT EXISTS (SELECT 1 FROM annotation a WHERE a.task_id = ta.task_id)");
+        } catch (DataAccessException e) {
+            // No legacy table on installations created after the annotation table
+            return 0;
+        }
+
+        Map<String, LabelDictionary> dictionaries = new HashMap<>();
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        Instant now = Instant.now();
+        for (Map<String, Object> row : rows) {
+            String classes = (String) row.get("classes");
+            LabelDictionary dictionary = dictionaries.computeIfAbsent(classes, LabelDictionary::parse);
+            String label = (String) row.get("annotation");
+            if (!dictionary.contains(label)) continue;
+
+            inserts.add(new Object[] { row.get("task_id"), row.get("annotator_id"), row.get("dataset_id"),
+                    dictionary.encode(label), Timestamp.from(now) });
+            deletes.add(new Object[] { row.get("task_id") });
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO annotation (task_id, annotator_id, dataset_id, label_code, updated_at) VALUES (?, ?, ?, ?, ?)",
+                    inserts);
+            jdbcTemplate.batchUpdate("DELETE FROM task_annotations WHERE task_id = ?", deletes);
+        }
+
+        Long remaining = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM task_annotations", Long.class);
+        legacyLabels = remaining != null && remaining > 0;
+        if (legacyLabels) {
+            System.out.println(remaining + " legacy annotations could not be attributed to an annotator; "
+                    + "they stay in task_annotations and are served read-only.");
+        }
+        return inserts.size();
+    }
+}
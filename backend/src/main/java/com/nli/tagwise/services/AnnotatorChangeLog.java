@@ -0,0 +1,232 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.models.AnnotatorChangeType;
+import com.nli.tagwise.models.Task;
+import com.nli.tagwise.models.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Per-annotator change log behind the delta sync endpoint. Every write that changes the task
+// list of an annotator (assignment, removal, label) adds rows to annotator_change in its own
+// transaction, under a version taken from annotator_change_sequence in that transaction. The
+// counter row stays locked until commit, so versions become visible in commit order and a
+// client at version v never misses a change committed later under a lower one.
+@Service
+// Its tables must exist before open() runs
+@DependsOn("entityManagerFactory")
+public class AnnotatorChangeLog {
+    private static final String INSERT_SQL =
+            "INSERT INTO annotator_change (version, annotator_id, task_id, dataset_id, type, changed_at) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_LABELED_SQL =
+            "INSERT INTO annotator_change (version, annotator_id, task_id, dataset_id, type, changed_at) " +
+                    "SELECT ?, ta.annotator_id, ta.task_id, ?, ?, ? FROM task_annotator ta WHERE ta.task_id = ?";
+    private static final long SEQUENCE_ID = 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration retention;
+
+    private ScheduledExecutorService pruner;
+
+    public AnnotatorChangeLog(
+            JdbcTemplate jdbcTemplate,
+            @Value("${tagwise.sync.retention:30d}") Duration retention) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.retention = retention;
+    }
+
+    /**
+     * Changes of an annotator after a version.
+     *
+     * @param since Version returned by the previous sync, null for a first sync
+     * @return The tasks that changed, or a reset when the client must reload its whole list
+     */
+    public Changes changesSince(Long annotatorId, Long since) {
+        // Read before the rows: a change committing in between is sent now and again next time
+        long version = Math.max(currentVersion(), since != null ? since : 0);
+        if (since == null || since < 0) {
+            return new Changes(version, true, Set.of());
+        }
+        // Versions after the client's one were pruned, the log can no longer tell what changed
+        Long oldest = jdbcTemplate.queryForObject("SELECT MIN(version) FROM annotator_change", Long.class);
+        if (oldest != null && since < oldest - 1) {
+            return new Changes(version, true, Set.of());
+        }
+        Set<Long> taskIds = new LinkedHashSet<>(jdbcTemplate.queryForList(
+                "SELECT task_id FROM annotator_change WHERE annotator_id = ? AND version > ? ORDER BY version, id",
+                Long.class, annotatorId, since));
+        return new Changes(version, false, taskIds);
+    }
+
+    // Last committed version, the counter of a transaction still running is not visible
+    private long currentVersion() {
+        List<Long> versions = jdbcTemplate.queryForList(
+                "SELECT last_version FROM annotator_change_sequence WHERE id = ?", Long.class, SEQUENCE_ID);
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+
+    // Locks the counter row until the calling transaction ends
+    private long nextVersion() {
+        jdbcTemplate.update("UPDATE annotator_change_sequence SET last_version = last_version + 1 WHERE id = ?",
+                SEQUENCE_ID);
+        return jdbcTemplate.queryForObject(
+                "SELECT last_version FROM annotator_change_sequence WHERE id = ?", Long.class, SEQUENCE_ID);
+    }
+
+    /**
+     * Current (task, annotators) pairs of a dataset, taken before the tasks are redistributed
+     * and passed back to {@link #recordReassignment}.
+     */
+    public Map<Long, Set<Long>> assignments(Long datasetId) {
+        Map<Long, Set<Long>> assignments = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT ta.task_id, ta.annotator_id FROM task_annotator ta " +
+                        "JOIN task t ON t.id = ta.task_id WHERE t.dataset_id = ?",
+                (ResultSet rs) -> {
+                    assignments.computeIfAbsent(rs.getLong(1), id -> new HashSet<>()).add(rs.getLong(2));
+                },
+                datasetId);
+        return assignments;
+    }
+
+    // Redistribution clears every completion status, so each new pair is logged, not only the moved ones
+    @Transactional
+    public void recordReassignment(Long datasetId, Map<Long, Set<Long>> before, List<Task> tasks) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (Task task : tasks) {
+            Set<Long> previous = before.getOrDefault(task.getId(), Set.of());
+            Set<Long> current = new HashSet<>();
+            for (User annotator : task.getAnnotators()) {
+                current.add(annotator.getId());
+                rows.add(row(annotator.getId(), task.getId(), datasetId, AnnotatorChangeType.ASSIGNED, now));
+            }
+            for (Long annotatorId : previous) {
+                if (!current.contains(annotatorId)) {
+                    rows.add(row(annotatorId, task.getId(), datasetId, AnnotatorChangeType.UNASSIGNED, now));
+                }
+            }
+        }
+        insert(rows);
+    }
+
+    @Transactional
+    public void record(Long annotatorId, Long datasetId, AnnotatorChangeType type, Collection<Long> taskIds) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(taskIds.size());
+        for (Long taskId : taskIds) {
+            rows.add(row(annotatorId, taskId, datasetId, type, now));
+        }
+        insert(rows);
+    }
+
+    /**
+     * Logs stored labels. A label shows in the task list of every annotator of the task, so one
+     * row is logged per assigned annotator, not only for the one who submitted it.
+     *
+     * @param labeled One { task id, annotator id, dataset id } triple per label
+     */
+    @Transactional
+    public void recordLabeled(List<Object[]> labeled) {
+        if (labeled.isEmpty()) return;
+        long version = nextVersion();
+        Timestamp now = Timestamp.from(Instant.now());
+        // Several labels on one task in a batch need its annotators logged only once
+        Map<Object, Object[]> byTask = new LinkedHashMap<>();
+        for (Object[] l : labeled) {
+            byTask.putIfAbsent(l[0], new Object[] { version, l[2], AnnotatorChangeType.LABELED.name(), now, l[0] });
+        }
+        jdbcTemplate.batchUpdate(INSERT_LABELED_SQL, new ArrayList<>(byTask.values()));
+    }
+
+    private static Object[] row(Object annotatorId, Object taskId, Object datasetId, AnnotatorChangeType type,
+            Timestamp now) {
+        return new Object[] { null, annotatorId, taskId, datasetId, type.name(), now };
+    }
+
+    // All rows of one call share a version
+    private void insert(List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        long version = nextVersion();
+        for (Object[] row : rows) {
+            row[0] = version;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+
+    @PostConstruct
+    void open() {
+        // Rows logged before versions existed keep their id as version, so clients syncing
+        // from such an id carry on, and the counter starts after them
+        jdbcTemplate.update("UPDATE annotator_change SET version = id WHERE version IS NULL");
+        Integer sequences = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM annotator_change_sequence WHERE id = ?", Integer.class, SEQUENCE_ID);
+        if (sequences == null || sequences == 0) {
+            try {
+                jdbcTemplate.update(
+                        "INSERT INTO annotator_change_sequence (id, last_version) " +
+                                "SELECT ?, COALESCE(MAX(version), 0) FROM annotator_change",
+                        SEQUENCE_ID);
+            } catch (DuplicateKeyException e) {
+                // Created by another instance starting at the same time
+            }
+        }
+        pruner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "annotator-change-prune");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pruner.scheduleWithFixedDelay(this::prune, 1, 60, TimeUnit.MINUTES);
+    }
+
+    // Whole versions are pruned, and the newest one is always kept so MIN(version) keeps
+    // telling which versions were pruned
+    void prune() {
+        try {
+            Long newest = jdbcTemplate.queryForObject("SELECT MAX(version) FROM annotator_change", Long.class);
+            if (newest == null) return;
+            Long expired = jdbcTemplate.queryForObject(
+                    "SELECT MAX(version) FROM annotator_change WHERE changed_at < ?", Long.class,
+                    Timestamp.from(Instant.now().minus(retention)));
+            if (expired == null) return;
+            int deleted = jdbcTemplate.update(
+                    "DELETE FROM annotator_change WHERE version <= ?", Math.min(expired, newest - 1));
+            if (deleted > 0) {
+                System.out.println("Pruned " + deleted + " annotator changes.");
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not prune annotator changes: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (pruner != null) {
+            pruner.shutdownNow();
+        }
+    }
+
+    /**
+     * @param version Version to send on the next sync
+     * @param reset   True when the client must replace its list instead of applying the changes
+     * @param taskIds Tasks of the annotator that changed, in log order
+     */
+    public record Changes(long version, boolean reset, Set<Long> taskIds) {
+    }
+}
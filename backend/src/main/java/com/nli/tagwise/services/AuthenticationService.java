@@ -1,14 +1,25 @@
 package com.nli.tagwise.services;
 
+import java.time.Duration;
 import java.util.Optional;
-
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 import com.nli.tagwise.custom.AlreadyVerifiedException;
 import com.nli.tagwise.custom.InvalidVerificationException;
+import com.nli.tagwise.custom.LoginThrottledException;
 import com.nli.tagwise.custom.UserNotFoundException;
 import com.nli.tagwise.dto.SignInDto;
 import com.nli.tagwise.dto.SignUpDto;
@@ -20,6 +31,7 @@ import com.nli.tagwise.models.User;
 import com.nli.tagwise.models.UserDetailsImpl;
 import com.nli.tagwise.repository.IUserRepo;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.mail.MessagingException;
 
 // cette classe sert pour gerer l'authentification de l'utilisateur
@@ -27,23 +39,44 @@ import jakarta.mail.MessagingException;
 public class AuthenticationService {
     private final IUserRepo userRepo;
     private final PasswordEncoder passwordEncoder;
-    private final AuthenticationManager authenticationManager;
     private final EmailService emailService;
     // c;est un service pour generer et verifier le code de verification en
     // utilisant redis
     private final RedisVerificationService redisVerificationService;
+    private final TokenRevocationService revocationService;
+    private final UserDetailsServiceImpl userDetailsService;
+    // BCrypt checks run here, off the request threads, so a login storm only queues logins
+    private final ThreadPoolExecutor loginExecutor;
+    private final Duration loginTimeout;
 
     public AuthenticationService(
             IUserRepo userRepo,
-            AuthenticationManager authenticationManager,
             PasswordEncoder passwordEncoder,
             EmailService emailService,
-            RedisVerificationService redisVerificationService) {
-        this.authenticationManager = authenticationManager;
+            RedisVerificationService redisVerificationService,
+            TokenRevocationService revocationService,
+            UserDetailsServiceImpl userDetailsService,
+            @Value("${tagwise.auth.login.threads:0}") int loginThreads,
+            @Value("${tagwise.auth.login.queue-capacity:64}") int loginQueueCapacity,
+            @Value("${tagwise.auth.login.timeout:5s}") Duration loginTimeout) {
         this.userRepo = userRepo;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
         this.redisVerificationService = redisVerificationService;
+        this.revocationService = revocationService;
+        this.userDetailsService = userDetailsService;
+        int threads = loginThreads > 0 ? loginThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.loginExecutor = new ThreadPoolExecutor(
+                threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(loginQueueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "login-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.loginTimeout = loginTimeout;
     }
 
     public SignUpResponse signup(SignUpDto input) throws MessagingException {
@@ -58,27 +91,64 @@ public class AuthenticationService {
         user.setDeleted(false); // Explicitly set deleted to false for new users
         User tmp = userRepo.save(user);
         String code = redisVerificationService.generateAndStoreCode(tmp.getId());
-        // sendVerificationEmail(user);
+        try {
+            emailService.sendVerificationCode(tmp.getEmail(), code);
+        } catch (MessagingException e) {
+            // The account exists now, the user can ask for the code again
+            System.err.println("Verification mail not queued for " + tmp.getEmail() + ": " + e.getMessage());
+        }
         return new SignUpResponse(tmp, code);
     }
 
     public UserDetailsImpl authenticate(SignInDto input) {
-        // First check if user exists and is not deleted
+        // Read from the database, not the principal cache: a stale cached entry must never
+        // let a disabled or deleted account log in
         User user = userRepo.findByEmail(input.getEmail())
                 .orElseThrow(() -> new UserNotFoundException("User not found"));
+        UserDetailsImpl userDetails = new UserDetailsImpl(user);
 
         // Check if user is deleted
         if (user.isDeleted() != null && user.isDeleted()) {
             throw new UserNotFoundException("User not found");
         }
 
-        // Then proceed with authentication
-        authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        input.getEmail(),
-                        input.getPassword()));
+        // Same order of checks as DaoAuthenticationProvider: account status, then password
+        if (!userDetails.isEnabled()) {
+            throw new DisabledException("User is disabled");
+        }
+        if (!checkPassword(input.getPassword(), user.getPassword())) {
+            throw new BadCredentialsException("Bad credentials");
+        }
+        // Revocations are only lifted by verification and by an admin enabling the account
+        return userDetails;
+    }
+
+    private boolean checkPassword(String rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+        Future<Boolean> check;
+        try {
+            check = loginExecutor.submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+        } catch (RejectedExecutionException e) {
+            throw new LoginThrottledException("Too many logins in progress, try again shortly");
+        }
+        try {
+            return check.get(loginTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            check.cancel(true);
+            throw new LoginThrottledException("Too many logins in progress, try again shortly");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LoginThrottledException("Login interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Password check failed", e.getCause());
+        }
+    }
 
-        return new UserDetailsImpl(user);
+    @PreDestroy
+    void shutdownLoginExecutor() {
+        loginExecutor.shutdownNow();
     }
 
     public void verifyUser(VerifyUserDto input) {
@@ -94,6 +164,9 @@ public class AuthenticationService {
             if (redisVerificationService.isCodeValid(user.getId(), input.getVerificationCode())) {
                 user.setEnabled(true);
                 userRepo.save(user);
+                // A cached principal would still be disabled and fail the next login
+                userDetailsService.evict(user.getId());
+                revocationService.restore(user.getId());
             } else {
                 throw new InvalidVerificationException("Invalid verification code");
             }
@@ -115,39 +188,14 @@ public class AuthenticationService {
             if (user.isEnabled()) {
                 throw new AlreadyVerifiedException("Account is already verified");
             }
-            redisVerificationService.generateAndStoreCode(user.getId());
-            // sendVerificationEmail(user);
+            String code = redisVerificationService.generateAndStoreCode(user.getId());
+            emailService.sendVerificationCode(user.getEmail(), code);
             userRepo.save(user);
         } else {
             throw new UserNotFoundException("User not found");
         }
     }
 
-    @SuppressWarnings("unused")
-    private void sendVerificationEmail(User user) throws MessagingException {
-        String subject = "Account Verification";
-        String verificationCode = "VERIFICATION CODE " + redisVerificationService.getCode(user.getId());
-        String htmlMessage = "<html>"
-                + "<body style=\"font-family: Arial, sans-serif;\">"
-                + "<div style=\"background-color: #f5f5f5; padding: 20px;\">"
-                + "<h2 style=\"color: #333;\">Welcome to our app!</h2>"
-                + "<p style=\"font-size: 16px;\">Please enter the verification code below to continue:</p>"
-                + "<div style=\"background-color: #fff; padding: 20px; border-radius: 5px; box-shadow: 0 0 10px rgba(0,0,0,0.1);\">"
-                + "<h3 style=\"color: #333;\">Verification Code:</h3>"
-                + "<p style=\"font-size: 18px; font-weight: bold; color: #007bff;\">" + verificationCode + "</p>"
-                + "</div>"
-                + "</div>"
-                + "</body>"
-                + "</html>";
-
-        // try {
-        emailService.sendVerificationEmail(user.getEmail(), subject, htmlMessage);
-        // } catch (MessagingException e) {
-        // // Handle email sending exception
-        // e.printStackTrace();
-        // }
-    }
-
     // private String generateVerificationCode() {
     // Random random = new Random();
     // int code = random.nextInt(900000) + 100000;
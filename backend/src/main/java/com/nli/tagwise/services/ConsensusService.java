@@ -0,0 +1,359 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.ConsensusResultDto;
+import com.nli.tagwise.dto.LabelCountDto;
+import com.nli.tagwise.models.ConsensusMethod;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.models.LabelDictionary;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+// Aggregates the labels of tasks that reached the redundancy target into one consensus
+// label per task, either by majority vote or with Dawid-Skene EM (each annotator gets a
+// confusion matrix, tasks a posterior over labels). Annotations are streamed in keyset
+// chunks into primitive arrays; the per-task work runs on a dedicated fork-join pool.
+@Service
+public class ConsensusService {
+    private static final int READ_CHUNK = 50_000;
+    private static final int WRITE_BATCH = 1000;
+    private static final int TASKS_PER_SPLIT = 4096;
+    private static final int MAX_ITERATIONS = 50;
+    private static final double TOLERANCE = 1e-6;
+    private static final double SMOOTHING = 0.01;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IDatasetRepo datasetRepo;
+    private final int redundancy;
+    private final ForkJoinPool pool;
+
+    public ConsensusService(
+            JdbcTemplate jdbcTemplate,
+            IDatasetRepo datasetRepo,
+            @Value("${tagwise.consensus.redundancy:3}") int redundancy,
+            @Value("${tagwise.consensus.parallelism:0}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.datasetRepo = datasetRepo;
+        this.redundancy = Math.max(1, redundancy);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Computes and stores the consensus label of every task of the dataset with at
+     * least the redundancy target of labels. Previous consensus rows are overwritten.
+     */
+    public ConsensusResultDto computeConsensus(Long datasetId, ConsensusMethod method) {
+        long start = System.currentTimeMillis();
+        Dataset dataset = datasetRepo.findById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+        LabelDictionary dictionary = LabelDictionary.parse(dataset.getClasses());
+        int labels = dictionary.size();
+
+        Ratings ratings = readRatings(datasetId, labels);
+        int tasks = ratings.taskCount();
+        short[] consensus = new short[tasks];
+        double[] confidence = new double[tasks];
+        double[] agreement = new double[ratings.annotatorIds.length * 2]; // (matching, total) per annotator
+
+        int iterations;
+        try {
+            iterations = pool.submit(() -> method == ConsensusMethod.DAWID_SKENE
+                    ? dawidSkene(ratings, labels, consensus, confidence, agreement)
+                    : majority(ratings, labels, consensus, confidence, agreement)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Consensus computation interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Consensus computation failed", e.getCause());
+        }
+
+        write(datasetId, method, ratings.taskIds, consensus, confidence);
+
+        long[] counts = new long[labels];
+        for (short code : consensus) {
+            counts[code]++;
+        }
+        List<LabelCountDto> labelCounts = new ArrayList<>();
+        for (int code = 0; code < labels; code++) {
+            labelCounts.add(new LabelCountDto(dictionary.decode(code), counts[code]));
+        }
+        Map<Long, Double> accuracy = new LinkedHashMap<>();
+        for (int a = 0; a < ratings.annotatorIds.length; a++) {
+            if (agreement[a * 2 + 1] > 0) {
+                accuracy.put(ratings.annotatorIds[a], agreement[a * 2] / agreement[a * 2 + 1]);
+            }
+        }
+
+        return new ConsensusResultDto(datasetId, method, tasks, ratings.codes.length, iterations,
+                System.currentTimeMillis() - start, labelCounts, accuracy);
+    }
+
+    // Keyset pagination on (task_id, annotator_id), the unique key of the annotation table,
+    // so a task is never split across two reads in a way that loses rows
+    private Ratings readRatings(Long datasetId, int labels) {
+        RatingsBuilder builder = new RatingsBuilder(labels, redundancy);
+        long[] cursor = { 0, 0 };
+        int[] read = new int[1];
+        do {
+            read[0] = 0;
+            jdbcTemplate.query(
+                    "SELECT task_id, annotator_id, label_code FROM annotation " +
+                            "WHERE dataset_id = ? AND (task_id > ? OR (task_id = ? AND annotator_id > ?)) " +
+                            "ORDER BY task_id, annotator_id LIMIT ?",
+                    (ResultSet rs) -> {
+                        cursor[0] = rs.getLong(1);
+                        cursor[1] = rs.getLong(2);
+                        builder.add(cursor[0], cursor[1], rs.getShort(3));
+                        read[0]++;
+                    },
+                    datasetId, cursor[0], cursor[0], cursor[1], READ_CHUNK);
+        } while (read[0] == READ_CHUNK);
+        return builder.build();
+    }
+
+    private int majority(Ratings r, int labels, short[] consensus, double[] confidence, double[] agreement) {
+        IntStream.range(0, r.taskCount()).parallel().forEach(i -> {
+            int[] votes = new int[labels];
+            for (int j = r.offsets[i]; j < r.offsets[i + 1]; j++) {
+                votes[r.codes[j]]++;
+            }
+            int best = 0;
+            for (int k = 1; k < labels; k++) {
+                if (votes[k] > votes[best]) best = k; // Ties go to the lowest code
+            }
+            consensus[i] = (short) best;
+            confidence[i] = (double) votes[best] / (r.offsets[i + 1] - r.offsets[i]);
+        });
+        for (int i = 0; i < r.taskCount(); i++) {
+            for (int j = r.offsets[i]; j < r.offsets[i + 1]; j++) {
+                if (r.codes[j] == consensus[i]) agreement[r.annotators[j] * 2]++;
+                agreement[r.annotators[j] * 2 + 1]++;
+            }
+        }
+        return 1;
+    }
+
+    private int dawidSkene(Ratings r, int labels, short[] consensus, double[] confidence, double[] agreement) {
+        int tasks = r.taskCount();
+        int annotators = r.annotatorIds.length;
+        int k2 = labels * labels;
+
+        // Posterior over true labels per task, initialised with the vote shares
+        double[] posterior = new double[tasks * labels];
+        IntStream.range(0, tasks).parallel().forEach(i -> {
+            double share = 1.0 / (r.offsets[i + 1] - r.offsets[i]);
+            for (int j = r.offsets[i]; j < r.offsets[i + 1]; j++) {
+                posterior[i * labels + r.codes[j]] += share;
+            }
+        });
+
+        double[] logPrior = new double[labels];
+        double[] logConfusion = new double[annotators * k2];
+        double[] counts = null;
+        int iteration = 0;
+        while (iteration < MAX_ITERATIONS) {
+            iteration++;
+
+            // M-step: expected (true label, given label) counts per annotator and label priors,
+            // summed over task splits in parallel; the last labels slots hold the priors
+            int splits = (tasks + TASKS_PER_SPLIT - 1) / TASKS_PER_SPLIT;
+            counts = IntStream.range(0, splits).parallel().mapToObj(s -> {
+                double[] partial = new double[annotators * k2 + labels];
+                int end = Math.min(tasks, (s + 1) * TASKS_PER_SPLIT);
+                for (int i = s * TASKS_PER_SPLIT; i < end; i++) {
+                    for (int k = 0; k < labels; k++) {
+                        double p = posterior[i * labels + k];
+                        partial[annotators * k2 + k] += p;
+                        for (int j = r.offsets[i]; j < r.offsets[i + 1]; j++) {
+                            partial[r.annotators[j] * k2 + k * labels + r.codes[j]] += p;
+                        }
+                    }
+                }
+                return partial;
+            }).reduce((x, y) -> {
+                for (int i = 0; i < x.length; i++) x[i] += y[i];
+                return x;
+            }).orElse(new double[annotators * k2 + labels]);
+
+            for (int k = 0; k < labels; k++) {
+                logPrior[k] = Math.log((counts[annotators * k2 + k] + SMOOTHING) / (tasks + labels * SMOOTHING));
+            }
+            for (int a = 0; a < annotators; a++) {
+                for (int k = 0; k < labels; k++) {
+                    int row = a * k2 + k * labels;
+                    double total = labels * SMOOTHING;
+                    for (int l = 0; l < labels; l++) total += counts[row + l];
+                    for (int l = 0; l < labels; l++) {
+                        logConfusion[row + l] = Math.log((counts[row + l] + SMOOTHING) / total);
+                    }
+                }
+            }
+
+            // E-step: posterior of each task from the priors and its annotators' confusion rows
+            double change = IntStream.range(0, tasks).parallel().mapToDouble(i -> {
+                double[] log = new double[labels];
+                double max = Double.NEGATIVE_INFINITY;
+                for (int k = 0; k < labels; k++) {
+                    double value = logPrior[k];
+                    for (int j = r.offsets[i]; j < r.offsets[i + 1]; j++) {
+                        value += logConfusion[r.annotators[j] * k2 + k * labels + r.codes[j]];
+                    }
+                    log[k] = value;
+                    max = Math.max(max, value);
+                }
+                double sum = 0;
+                for (int k = 0; k < labels; k++) {
+                    log[k] = Math.exp(log[k] - max);
+                    sum += log[k];
+                }
+                double delta = 0;
+                for (int k = 0; k < labels; k++) {
+                    double p = log[k] / sum;
+                    delta = Math.max(delta, Math.abs(p - posterior[i * labels + k]));
+                    posterior[i * labels + k] = p;
+                }
+                return delta;
+            }).max().orElse(0);
+
+            if (change < TOLERANCE) break;
+        }
+
+        IntStream.range(0, tasks).parallel().forEach(i -> {
+            int best = 0;
+            for (int k = 1; k < labels; k++) {
+                if (posterior[i * labels + k] > posterior[i * labels + best]) best = k;
+            }
+            consensus[i] = (short) best;
+            confidence[i] = posterior[i * labels + best];
+        });
+        // Accuracy of an annotator: expected share of its labels equal to the true label
+        for (int a = 0; a < annotators; a++) {
+            for (int k = 0; k < labels; k++) {
+                for (int l = 0; l < labels; l++) {
+                    double c = counts[a * k2 + k * labels + l];
+                    if (k == l) agreement[a * 2] += c;
+                    agreement[a * 2 + 1] += c;
+                }
+            }
+        }
+        return iteration;
+    }
+
+    private void write(Long datasetId, ConsensusMethod method, long[] taskIds, short[] consensus,
+            double[] confidence) {
+        List<Integer> rows = IntStream.range(0, taskIds.length).boxed().toList();
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO task_consensus (task_id, dataset_id, label_code, confidence, method, computed_at) " +
+                        "VALUES (?, ?, ?, ?, ?, ?) " +
+                        "ON DUPLICATE KEY UPDATE label_code = VALUES(label_code), confidence = VALUES(confidence), " +
+                        "method = VALUES(method), computed_at = VALUES(computed_at)",
+                rows, WRITE_BATCH, (ps, i) -> {
+                    ps.setLong(1, taskIds[i]);
+                    ps.setLong(2, datasetId);
+                    ps.setShort(3, consensus[i]);
+                    ps.setDouble(4, confidence[i]);
+                    ps.setString(5, method.name());
+                    ps.setTimestamp(6, now);
+                });
+    }
+
+    // Ratings in compressed rows: ratings of task i are at [offsets[i], offsets[i + 1])
+    private static final class Ratings {
+        private final long[] taskIds;
+        private final int[] offsets;
+        private final int[] annotators; // Dense index into annotatorIds
+        private final short[] codes;
+        private final long[] annotatorIds;
+
+        private Ratings(long[] taskIds, int[] offsets, int[] annotators, short[] codes, long[] annotatorIds) {
+            this.taskIds = taskIds;
+            this.offsets = offsets;
+            this.annotators = annotators;
+            this.codes = codes;
+            this.annotatorIds = annotatorIds;
+        }
+
+        private int taskCount() {
+            return taskIds.length;
+        }
+    }
+
+    // Receives rows ordered by task and keeps the tasks with enough labels
+    private static final class RatingsBuilder {
+        private final int labels;
+        private final int redundancy;
+        private final Map<Long, Integer> annotatorIndex = new HashMap<>();
+        private long[] taskIds = new long[1024];
+        private int[] offsets = new int[1025];
+        private int[] annotators = new int[4096];
+        private short[] codes = new short[4096];
+        private int tasks;
+        private int size;
+        private long currentTask = -1;
+
+        private RatingsBuilder(int labels, int redundancy) {
+            this.labels = labels;
+            this.redundancy = redundancy;
+        }
+
+        private void add(long taskId, long annotatorId, short code) {
+            if (code < 0 || code >= labels) return;
+            if (taskId != currentTask) {
+                closeTask();
+                currentTask = taskId;
+            }
+            if (size == codes.length) {
+                annotators = Arrays.copyOf(annotators, size * 2);
+                codes = Arrays.copyOf(codes, size * 2);
+            }
+            annotators[size] = annotatorIndex.computeIfAbsent(annotatorId, id -> annotatorIndex.size());
+            codes[size] = code;
+            size++;
+        }
+
+        // Keeps the current task if it reached the redundancy target, drops its rows otherwise
+        private void closeTask() {
+            if (currentTask < 0) return;
+            if (size - offsets[tasks] < redundancy) {
+                size = offsets[tasks];
+                return;
+            }
+            if (tasks + 1 == taskIds.length) {
+                taskIds = Arrays.copyOf(taskIds, taskIds.length * 2);
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+            }
+            taskIds[tasks] = currentTask;
+            tasks++;
+            offsets[tasks] = size;
+        }
+
+        private Ratings build() {
+            closeTask();
+            long[] ids = new long[annotatorIndex.size()];
+            annotatorIndex.forEach((id, index) -> ids[index] = id);
+            return new Ratings(
+                    Arrays.copyOf(taskIds, tasks),
+                    Arrays.copyOf(offsets, tasks + 1),
+                    Arrays.copyOf(annotators, size),
+                    Arrays.copyOf(codes, size),
+                    ids);
+        }
+    }
+}
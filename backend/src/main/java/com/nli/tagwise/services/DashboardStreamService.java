@@ -0,0 +1,240 @@
+package com.nli.tagwise.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nli.tagwise.dto.DashboardUpdateDto;
+import com.nli.tagwise.dto.DatasetSummaryView;
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Live admin dashboard over Server-Sent Events. Submissions only mark their dataset and
+// annotator as changed; at most once per push interval the changed datasets are counted
+// (one query each, whatever the number of open dashboards) and the update is serialized
+// once and queued to every subscriber. Each subscriber is written by its own sender task,
+// so a slow client only delays itself; one with too many updates queued is dropped and
+// reconnects later. Nothing is tracked while no dashboard is open.
+@Service
+public class DashboardStreamService {
+    private final IDatasetRepo datasetRepo;
+    private final AdminStatsService adminStatsService;
+    private final ObjectMapper objectMapper;
+    private final Duration pushInterval;
+    private final Duration heartbeat;
+    private final Duration streamTimeout;
+    private final int maxPending;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // Changes since the last push, guarded by "this"
+    private Set<Long> dirtyDatasets = new HashSet<>();
+    private Map<Long, DashboardUpdateDto.AnnotatorActivity> activity = new HashMap<>();
+
+    private ScheduledExecutorService pusher;
+    // Unbounded: a write stuck on a dead connection holds a thread, never the other subscribers
+    private ExecutorService sender;
+    private long lastSentAt;
+
+    public DashboardStreamService(
+            IDatasetRepo datasetRepo,
+            AdminStatsService adminStatsService,
+            ObjectMapper objectMapper,
+            @Value("${tagwise.dashboard.push-interval:1s}") Duration pushInterval,
+            @Value("${tagwise.dashboard.heartbeat:15s}") Duration heartbeat,
+            @Value("${tagwise.dashboard.stream-timeout:30m}") Duration streamTimeout,
+            @Value("${tagwise.dashboard.max-pending:16}") int maxPending) {
+        this.datasetRepo = datasetRepo;
+        this.adminStatsService = adminStatsService;
+        this.objectMapper = objectMapper;
+        this.pushInterval = pushInterval;
+        this.heartbeat = heartbeat;
+        this.streamTimeout = streamTimeout;
+        this.maxPending = Math.max(1, maxPending);
+    }
+
+    @PostConstruct
+    void open() {
+        pusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "dashboard-stream");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = pushInterval.toMillis();
+        pusher.scheduleWithFixedDelay(this::push, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        sender = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "dashboard-stream-send");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Opens a dashboard stream. The current dashboard snapshot is sent first as a "stats"
+     * event, then "progress" events carrying {@link DashboardUpdateDto} as labels come in.
+     */
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        try {
+            emitter.send(SseEmitter.event().name("stats").data(adminStatsService.getStats()));
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return emitter;
+        }
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnotationSubmitted(AnnotationSubmittedEvent event) {
+        if (subscribers.isEmpty()) return;
+        Instant now = Instant.now();
+        synchronized (this) {
+            dirtyDatasets.add(event.getDatasetId());
+            DashboardUpdateDto.AnnotatorActivity entry = activity.computeIfAbsent(event.getAnnotatorId(),
+                    id -> new DashboardUpdateDto.AnnotatorActivity(id, 0, now));
+            entry.setSubmissions(entry.getSubmissions() + 1);
+            entry.setLastSubmittedAt(now);
+        }
+    }
+
+    void push() {
+        try {
+            Set<Long> datasets;
+            Map<Long, DashboardUpdateDto.AnnotatorActivity> annotators;
+            synchronized (this) {
+                datasets = dirtyDatasets;
+                annotators = activity;
+                dirtyDatasets = new HashSet<>();
+                activity = new HashMap<>();
+            }
+            if (subscribers.isEmpty()) return;
+
+            long now = System.currentTimeMillis();
+            if (datasets.isEmpty() && annotators.isEmpty()) {
+                // Keeps proxies from closing idle streams and finds dashboards that went away
+                if (now - lastSentAt >= heartbeat.toMillis()) {
+                    broadcast(SseEmitter.event().comment("heartbeat").build());
+                    lastSentAt = now;
+                }
+                return;
+            }
+
+            List<DashboardUpdateDto.DatasetProgress> progress = new ArrayList<>(datasets.size());
+            for (Long datasetId : datasets) {
+                datasetRepo.findSummaryById(datasetId).ifPresent(summary -> progress.add(toProgress(summary)));
+            }
+            String json = objectMapper.writeValueAsString(
+                    new DashboardUpdateDto(progress, new ArrayList<>(annotators.values()), Instant.now()));
+            broadcast(SseEmitter.event().name("progress").data(json).build());
+            lastSentAt = now;
+        } catch (JsonProcessingException | RuntimeException e) {
+            System.err.println("Could not push dashboard update: " + e.getMessage());
+        }
+    }
+
+    // The event is built once and the same bytes are queued to every subscriber
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(event)) {
+                drop(subscriber, new IOException("Dashboard stream subscriber too slow"));
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber, Exception cause) {
+        subscribers.remove(subscriber);
+        subscriber.emitter.completeWithError(cause);
+    }
+
+    // Updates waiting for one client, written in order by at most one sender task at a time
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Set<ResponseBodyEmitter.DataWithMediaType>> pending = new ArrayDeque<>();
+        private boolean sending;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        // False when the client already has maxPending updates waiting
+        private synchronized boolean offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            if (pending.size() >= maxPending) return false;
+            pending.add(event);
+            if (!sending) {
+                sending = true;
+                sender.execute(this::drain);
+            }
+            return true;
+        }
+
+        private void drain() {
+            while (true) {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                synchronized (this) {
+                    event = pending.poll();
+                    if (event == null) {
+                        sending = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(event);
+                } catch (IOException | IllegalStateException e) {
+                    synchronized (this) {
+                        pending.clear();
+                        sending = false;
+                    }
+                    drop(this, e);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static DashboardUpdateDto.DatasetProgress toProgress(DatasetSummaryView summary) {
+        return new DashboardUpdateDto.DatasetProgress(
+                summary.getId(),
+                summary.getTaskCount(),
+                summary.getCompletedTaskCount(),
+                summary.getCompletionPercentage());
+    }
+
+    @PreDestroy
+    void close() {
+        if (pusher != null) {
+            pusher.shutdownNow();
+        }
+        if (sender != null) {
+            sender.shutdownNow();
+        }
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+}
@@ -1,11 +1,17 @@
 package com.nli.tagwise.services;
 
-import com.nli.tagwise.dto.AnnotatorDto;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.nli.tagwise.dto.AnnotatorProgressDto;
+import com.nli.tagwise.dto.AnnotatorSummaryDto;
 import com.nli.tagwise.dto.DatasetDetailsDto;
 import com.nli.tagwise.dto.DatasetDto;
 import com.nli.tagwise.dto.DatasetListDto;
+import com.nli.tagwise.dto.DatasetSummaryView;
+import com.nli.tagwise.dto.SampleStrata;
 import com.nli.tagwise.dto.TextPairDto;
 import com.nli.tagwise.dto.DatasetAnnotatorDto;
+import com.nli.tagwise.events.DatasetUploadedEvent;
+import com.nli.tagwise.events.TaskAssignmentsChangedEvent;
 import com.nli.tagwise.models.Dataset;
 import com.nli.tagwise.models.DatasetAnnotator;
 import com.nli.tagwise.models.Role;
@@ -15,6 +21,10 @@ import com.nli.tagwise.repository.IDatasetAnnotatorRepo;
 import com.nli.tagwise.repository.IDatasetRepo;
 import com.nli.tagwise.repository.ITaskRepo;
 import com.nli.tagwise.repository.IUserRepo;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
@@ -27,18 +37,36 @@ import java.util.stream.Collectors;
 
 @Service
 public class DatasetService {
+    private static final List<String> DATASET_FIELDS = List.of(
+            "id", "name", "description", "classes", "completionPercentage");
+
     private final IDatasetRepo datasetRepo;
     private final ITaskRepo taskRepo;
     private final IDatasetAnnotatorRepo datasetAnnotatorRepo;
     private final IUserRepo userRepo;
-
-    public DatasetService(IDatasetRepo datasetRepo, ITaskRepo taskRepo, IDatasetAnnotatorRepo datasetAnnotatorRepo, IUserRepo userRepo) {
+    private final TaskSamplingService taskSamplingService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskTextService taskTextService;
+    private final ReadCacheService readCache;
+    private final AnnotatorChangeLog changeLog;
+
+    public DatasetService(IDatasetRepo datasetRepo, ITaskRepo taskRepo, IDatasetAnnotatorRepo datasetAnnotatorRepo, IUserRepo userRepo,
+            TaskSamplingService taskSamplingService, ApplicationEventPublisher eventPublisher, JdbcTemplate jdbcTemplate,
+            TaskTextService taskTextService, ReadCacheService readCache, AnnotatorChangeLog changeLog) {
         this.datasetRepo = datasetRepo;
         this.taskRepo = taskRepo;
         this.datasetAnnotatorRepo = datasetAnnotatorRepo;
         this.userRepo = userRepo;
+        this.taskSamplingService = taskSamplingService;
+        this.eventPublisher = eventPublisher;
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskTextService = taskTextService;
+        this.readCache = readCache;
+        this.changeLog = changeLog;
     }
 
+    @Transactional
     public Dataset saveDatasetFromCsv(MultipartFile file, String name, String classes, String description) throws IOException {
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream()))) {
             Dataset dataset = new Dataset();
@@ -51,6 +79,7 @@ public class DatasetService {
             Dataset savedDataset = datasetRepo.save(dataset);
 
             List<Task> tasks = new ArrayList<>();
+            List<String[]> pairs = new ArrayList<>();
             String line;
             while ((line = reader.readLine()) != null) {
                 String[] columns = line.split("\t", -1);
@@ -58,14 +87,20 @@ public class DatasetService {
 
                 Task task = new Task();
                 task.setDataset(savedDataset);
-                task.setText1(columns[0].trim());
-                task.setText2(columns[1].trim());
-                task.setAnnotations(new ArrayList<>());
                 task.setAnnotators(new ArrayList<>());
                 task.setCompletionStatus(new HashMap<>());
                 tasks.add(task);
+                pairs.add(new String[] { columns[0].trim(), columns[1].trim() });
             }
             taskRepo.saveAll(tasks);
+
+            // Texts go to the side table once the task ids are known
+            List<TextPairDto> texts = new ArrayList<>(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                texts.add(new TextPairDto(tasks.get(i).getId(), pairs.get(i)[0], pairs.get(i)[1]));
+            }
+            taskTextService.saveTexts(texts);
+            eventPublisher.publishEvent(new DatasetUploadedEvent(savedDataset.getId()));
             return savedDataset;
         }
     }
@@ -95,8 +130,13 @@ public class DatasetService {
         List<Task> tasks = taskRepo.findByDataset(dataset);
 
         // Divide tasks among annotators
+        Map<Long, Set<Long>> before = changeLog.assignments(datasetId);
         divideTasksAmongAnnotators(tasks, users);
         taskRepo.saveAll(tasks);
+        if (!users.isEmpty()) {
+            changeLog.recordReassignment(datasetId, before, tasks);
+        }
+        eventPublisher.publishEvent(new TaskAssignmentsChangedEvent(datasetId));
 
         // Map to DTO
         DatasetDto response = new DatasetDto();
@@ -139,10 +179,11 @@ public class DatasetService {
                 .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
     }
 
-    public List<Task> getDatasetTasks(Long datasetId) {
-        return taskRepo.findAll().stream()
-                .filter(task -> task.getDataset().getId().equals(datasetId))
-                .collect(Collectors.toList());
+    public DatasetListDto getDatasetSummary(Long datasetId) {
+        DatasetSummaryView summary = datasetRepo.findSummaryById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+        return new DatasetListDto(summary.getId(), summary.getName(), summary.getCompletionPercentage(),
+                summary.getClasses(), summary.getDescription());
     }
 
     public List<DatasetAnnotator> getDatasetAnnotators(Long datasetId) {
@@ -150,16 +191,17 @@ public class DatasetService {
         return datasetAnnotatorRepo.findByDataset(dataset);
     }
 
-    public List<User> getUnassignedAnnotators(Long datasetId) {
-        Dataset dataset = getDatasetDetails(datasetId);
-        List<User> allAnnotators = userRepo.findByRoleAndDeletedFalse(Role.ROLE_USER);
-        List<DatasetAnnotator> assignedLinks = datasetAnnotatorRepo.findByDataset(dataset);
-        List<Long> assignedAnnotatorIds = assignedLinks.stream()
-                .map(link -> link.getAnnotator().getId())
-                .collect(Collectors.toList());
-        return allAnnotators.stream()
-                .filter(annotator -> !assignedAnnotatorIds.contains(annotator.getId()))
-                .collect(Collectors.toList());
+    // A null size returns every match in one page
+    public List<AnnotatorSummaryDto> getUnassignedAnnotators(Long datasetId, String search, int page, Integer size) {
+        checkPage(page, size);
+        if (!datasetRepo.existsById(datasetId)) {
+            throw new IllegalArgumentException("Dataset not found");
+        }
+        String pattern = search != null && !search.isBlank()
+                ? "%" + search.trim().toLowerCase() + "%"
+                : null;
+        Pageable pageable = size != null ? PageRequest.of(page, size) : Pageable.unpaged();
+        return userRepo.findUnassignedAnnotators(datasetId, Role.ROLE_USER, pattern, pageable);
     }
 
     @Transactional
@@ -175,45 +217,120 @@ public class DatasetService {
                 throw new IllegalArgumentException("Annotator is not assigned to this dataset: " + annotatorId);
             }
         }
+        eventPublisher.publishEvent(new TaskAssignmentsChangedEvent(datasetId));
 
         return new DatasetDto(dataset.getName(), dataset.getDescription(), dataset.getClasses(),
-                dataset.getTasks().size());
-    }
-
-    public List<DatasetListDto> listDatasetDtos() {
-        List<Dataset> datasets = listDatasets();
-        return datasets.stream()
-                .map(dataset -> new DatasetListDto(
-                        dataset.getId(),
-                        dataset.getName(),
-                        dataset.getCompletionPercentage(),
-                        dataset.getClasses(),
-                        dataset.getDescription()))
+                (int) taskRepo.countByDataset(dataset));
+    }
+
+    /**
+     * Same page as {@link #listDatasetDtos(int, Integer)} restricted to the requested fields.
+     * Only the selected columns are read, and the task counts behind completionPercentage
+     * are only computed when it is requested. Pages are served from the read cache, with the
+     * stamp they were loaded under.
+     */
+    public ReadCacheService.Stamped<List<DatasetListDto>> listDatasetDtos(int page, Integer size, String fields,
+            String stamp) {
+        checkPage(page, size);
+        return readCache.get(ReadCacheService.DATASET_LIST, null, page + "|" + size + "|" + fields, stamp,
+                new TypeReference<List<DatasetListDto>>() {
+                }, () -> loadDatasetDtos(page, size, fields));
+    }
+
+    private List<DatasetListDto> loadDatasetDtos(int page, Integer size, String fields) {
+        if (fields == null) {
+            return listDatasetDtos(page, size);
+        }
+        FieldSelection selection = FieldSelection.parse(fields, DATASET_FIELDS);
+        int limit = size != null ? size : Integer.MAX_VALUE;
+        long offset = size != null ? (long) page * size : 0;
+
+        StringBuilder select = new StringBuilder("SELECT d.id");
+        if (selection.includes("name")) select.append(", d.name");
+        if (selection.includes("description")) select.append(", d.description");
+        if (selection.includes("classes")) select.append(", d.classes");
+        if (selection.includes("completionPercentage")) {
+            select.append(", (SELECT COUNT(*) FROM task t WHERE t.dataset_id = d.id) AS task_count")
+                    .append(", (SELECT COUNT(*) FROM task t WHERE t.dataset_id = d.id ")
+                    .append("AND EXISTS (SELECT 1 FROM task_completion_status cs WHERE cs.task_id = t.id) ")
+                    .append("AND NOT EXISTS (SELECT 1 FROM task_completion_status cs WHERE cs.task_id = t.id ")
+                    .append("AND (cs.completed = false OR cs.completed IS NULL))) AS completed_count");
+        }
+        select.append(" FROM dataset d ORDER BY d.id LIMIT ? OFFSET ?");
+
+        return jdbcTemplate.query(select.toString(), (rs, rowNum) -> {
+            Double completion = null;
+            if (selection.includes("completionPercentage")) {
+                long taskCount = rs.getLong("task_count");
+                completion = taskCount == 0 ? 0 : (double) rs.getLong("completed_count") / taskCount * 100;
+            }
+            return new DatasetListDto(
+                    rs.getLong("id"),
+                    selection.includes("name") ? rs.getString("name") : null,
+                    completion,
+                    selection.includes("classes") ? rs.getString("classes") : null,
+                    selection.includes("description") ? rs.getString("description") : null);
+        }, limit, offset);
+    }
+
+    // A null size means no paging, the whole list in one query
+    public List<DatasetListDto> listDatasetDtos(int page, Integer size) {
+        checkPage(page, size);
+        int limit = size != null ? size : Integer.MAX_VALUE;
+        long offset = size != null ? (long) page * size : 0;
+        return datasetRepo.findSummaries(limit, offset).stream()
+                .map(summary -> new DatasetListDto(
+                        summary.getId(),
+                        summary.getName(),
+                        summary.getCompletionPercentage(),
+                        summary.getClasses(),
+                        summary.getDescription()))
                 .collect(Collectors.toList());
     }
 
-    public DatasetDetailsDto getDatasetFullDetails(Long datasetId) {
-        Dataset dataset = getDatasetDetails(datasetId);
+    // Negative values would reach the database as a negative LIMIT/OFFSET
+    private static void checkPage(int page, Integer size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative");
+        }
+        if (size != null && size <= 0) {
+            throw new IllegalArgumentException("Size must be positive");
+        }
+    }
 
-        DatasetDetailsDto response = new DatasetDetailsDto();
-        response.setId(dataset.getId());
-        response.setName(dataset.getName());
-        response.setDescription(dataset.getDescription());
-        response.setClasses(dataset.getClasses());
-        response.setCompletionPercentage(dataset.getCompletionPercentage());
-        response.setTotalPairs(dataset.getTasks().size());
+    // Cached per dataset and sample size, so the sample stays the same until the dataset changes
+    public ReadCacheService.Stamped<DatasetDetailsDto> getDatasetFullDetails(Long datasetId, int sampleSize,
+            String stamp) {
+        return readCache.get(ReadCacheService.DATASET_DETAILS, datasetId, String.valueOf(sampleSize), stamp,
+                new TypeReference<DatasetDetailsDto>() {
+                }, () -> loadDatasetFullDetails(datasetId, sampleSize));
+    }
 
-        response.setSamplePairs(dataset.getTasks().stream()
-                .limit(5)
-                .map(task -> new TextPairDto(task.getId(), task.getText1(), task.getText2()))
+    private DatasetDetailsDto loadDatasetFullDetails(Long datasetId, int sampleSize) {
+        DatasetSummaryView summary = datasetRepo.findSummaryById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+
+        DatasetDetailsDto response = new DatasetDetailsDto();
+        response.setId(summary.getId());
+        response.setName(summary.getName());
+        response.setDescription(summary.getDescription());
+        response.setClasses(summary.getClasses());
+        response.setCompletionPercentage(summary.getCompletionPercentage());
+        response.setTotalPairs((int) summary.getTaskCount());
+        response.setCompletedPairs(summary.getCompletedTaskCount());
+
+        response.setSamplePairs(taskSamplingService.sample(datasetId, sampleSize, SampleStrata.NONE, null, null)
+                .stream()
+                .flatMap(sample -> sample.getPairs().stream())
                 .collect(Collectors.toList()));
 
-        response.setAssignedAnnotators(dataset.getAnnotators().stream()
-                .map(da -> new AnnotatorDto(
-                        da.getAnnotator().getId(),
-                        da.getAnnotator().getFirstName() + " " + da.getAnnotator().getLastName(),
-                        da.getAnnotator().getEmail(),
-                        taskRepo.countCompletedTasksByDatasetAndAnnotator(dataset, da.getAnnotator())))
+        response.setAssignedAnnotators(datasetAnnotatorRepo.findAnnotatorProgress(datasetId).stream()
+                .map(progress -> new AnnotatorProgressDto(
+                        progress.getAnnotatorId(),
+                        progress.getFirstName() + " " + progress.getLastName(),
+                        progress.getEmail(),
+                        progress.getAssignedTasks(),
+                        progress.getCompletedTasks()))
                 .collect(Collectors.toList()));
 
         return response;
@@ -237,10 +354,13 @@ public class DatasetService {
         return datasetRepo.count();
     }
 
-    public List<Dataset> getRecentDatasets(int limit) {
-        return datasetRepo.findAll().stream()
-                .sorted((d1, d2) -> d2.getId().compareTo(d1.getId()))
-                .limit(limit)
+    public List<DatasetDto> getRecentDatasets(int limit) {
+        return datasetRepo.findRecentSummaries(limit).stream()
+                .map(summary -> new DatasetDto(
+                        summary.getName(),
+                        summary.getDescription(),
+                        summary.getClasses(),
+                        (int) summary.getTaskCount()))
                 .collect(Collectors.toList());
     }
 }
\ No newline at end of file
@@ -1,25 +1,204 @@
 package com.nli.tagwise.services;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Outbound mail is queued and sent by background workers, so requests never wait on the
+// mail server. A worker drains up to batch-size messages and sends them through one SMTP
+// connection; messages that fail are queued again after an exponential backoff.
 @Service
 public class EmailService {
-    @Autowired
-    private JavaMailSender emailSender;
+    private static final String VERIFICATION_SUBJECT = "Account Verification";
+    // Static parts of the verification mail, only the code is inserted per message
+    private static final String VERIFICATION_HEAD = "<html>"
+            + "<body style=\"font-family: Arial, sans-serif;\">"
+            + "<div style=\"background-color: #f5f5f5; padding: 20px;\">"
+            + "<h2 style=\"color: #333;\">Welcome to our app!</h2>"
+            + "<p style=\"font-size: 16px;\">Please enter the verification code below to continue:</p>"
+            + "<div style=\"background-color: #fff; padding: 20px; border-radius: 5px; box-shadow: 0 0 10px rgba(0,0,0,0.1);\">"
+            + "<h3 style=\"color: #333;\">Verification Code:</h3>"
+            + "<p style=\"font-size: 18px; font-weight: bold; color: #007bff;\">VERIFICATION CODE ";
+    private static final String VERIFICATION_TAIL = "</p>"
+            + "</div>"
+            + "</div>"
+            + "</body>"
+            + "</html>";
+
+    private record OutgoingMail(String to, String subject, String html, int attempt) {
+    }
+
+    private final JavaMailSender emailSender;
+    private final BlockingQueue<OutgoingMail> queue;
+    private final int workers;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+
+    private ExecutorService workerPool;
+    private ScheduledExecutorService retryScheduler;
+    private volatile boolean running;
+
+    public EmailService(
+            JavaMailSender emailSender,
+            @Value("${tagwise.mail.queue-capacity:1000}") int queueCapacity,
+            @Value("${tagwise.mail.workers:2}") int workers,
+            @Value("${tagwise.mail.batch-size:20}") int batchSize,
+            @Value("${tagwise.mail.max-attempts:5}") int maxAttempts,
+            @Value("${tagwise.mail.retry-backoff:2s}") Duration retryBackoff) {
+        this.emailSender = emailSender;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+    }
+
+    @PostConstruct
+    void start() {
+        running = true;
+        AtomicInteger counter = new AtomicInteger();
+        workerPool = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "mail-sender-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workers; i++) {
+            workerPool.execute(this::drain);
+        }
+        retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "mail-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
 
+    /**
+     * Queues the verification mail and returns at once.
+     *
+     * @throws MessagingException When the queue is full
+     */
+    public void sendVerificationCode(String to, String code) throws MessagingException {
+        String html = VERIFICATION_HEAD + HtmlUtils.htmlEscape(code) + VERIFICATION_TAIL;
+        sendVerificationEmail(to, VERIFICATION_SUBJECT, html);
+    }
+
+    /**
+     * Queues an HTML mail and returns at once.
+     *
+     * @throws MessagingException When the queue is full
+     */
     public void sendVerificationEmail(String to, String subject, String text) throws MessagingException {
+        if (!queue.offer(new OutgoingMail(to, subject, text, 1))) {
+            throw new MessagingException("Mail queue is full");
+        }
+    }
+
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    private void drain() {
+        List<OutgoingMail> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            try {
+                send(batch);
+            } catch (RuntimeException e) {
+                System.err.println("Mail worker error: " + e.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private void send(List<OutgoingMail> batch) {
+        List<OutgoingMail> mails = new ArrayList<>(batch.size());
+        List<MimeMessage> messages = new ArrayList<>(batch.size());
+        for (OutgoingMail mail : batch) {
+            try {
+                messages.add(toMessage(mail));
+                mails.add(mail);
+            } catch (MessagingException e) {
+                // A malformed message will not get better by retrying
+                System.err.println("Dropping mail to " + mail.to() + ": " + e.getMessage());
+            }
+        }
+        if (messages.isEmpty()) return;
+
+        try {
+            // One connection for the whole batch
+            emailSender.send(messages.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            Map<Object, Exception> failed = e.getFailedMessages();
+            for (int i = 0; i < messages.size(); i++) {
+                // Without per-message details the whole batch is considered failed
+                if (failed.isEmpty() || failed.containsKey(messages.get(i))) {
+                    retry(mails.get(i), e);
+                }
+            }
+        } catch (MailException e) {
+            mails.forEach(mail -> retry(mail, e));
+        }
+    }
+
+    private MimeMessage toMessage(OutgoingMail mail) throws MessagingException {
         MimeMessage message = emailSender.createMimeMessage();
         MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
-        helper.setTo(to);
-        helper.setSubject(subject);
-        helper.setText(text, true);
+        helper.setTo(mail.to());
+        helper.setSubject(mail.subject());
+        helper.setText(mail.html(), true);
+        return message;
+    }
+
+    private void retry(OutgoingMail mail, Exception cause) {
+        if (mail.attempt() >= maxAttempts || !running) {
+            System.err.println("Giving up on mail to " + mail.to() + " after " + mail.attempt()
+                    + " attempts: " + cause.getMessage());
+            return;
+        }
+        // 1x, 2x, 4x ... the base backoff
+        long delayMs = retryBackoff.toMillis() << Math.min(mail.attempt() - 1, 10);
+        OutgoingMail next = new OutgoingMail(mail.to(), mail.subject(), mail.html(), mail.attempt() + 1);
+        retryScheduler.schedule(() -> {
+            if (!queue.offer(next)) {
+                System.err.println("Mail queue full, dropping retry to " + next.to());
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
 
-        emailSender.send(message);
+    @PreDestroy
+    void stop() {
+        running = false;
+        retryScheduler.shutdownNow();
+        workerPool.shutdownNow();
+        if (!queue.isEmpty()) {
+            System.err.println(queue.size() + " queued mails were not sent before shutdown.");
+        }
     }
-}
\ No newline at end of file
+}
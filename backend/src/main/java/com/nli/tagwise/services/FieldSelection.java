@@ -0,0 +1,33 @@
+package com.nli.tagwise.services;
+
+import java.util.*;
+
+// Parsed fields= parameter of a list endpoint, checked against the fields it can project.
+// No parameter selects every field.
+final class FieldSelection {
+    private final Set<String> fields;
+
+    private FieldSelection(Set<String> fields) {
+        this.fields = fields;
+    }
+
+    static FieldSelection parse(String fields, Collection<String> allowed) {
+        if (fields == null || fields.isBlank()) {
+            return new FieldSelection(new LinkedHashSet<>(allowed));
+        }
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) continue;
+            if (!allowed.contains(name)) {
+                throw new IllegalArgumentException("Unknown field: " + name);
+            }
+            selected.add(name);
+        }
+        return new FieldSelection(selected);
+    }
+
+    boolean includes(String field) {
+        return fields.contains(field);
+    }
+}
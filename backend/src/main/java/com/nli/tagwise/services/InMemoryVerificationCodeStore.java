@@ -0,0 +1,65 @@
+package com.nli.tagwise.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+// Codes kept in this process only, for single-node and test deployments without Redis.
+// Expired entries are dropped when read and swept from time to time on writes.
+@Component
+@ConditionalOnProperty(name = "tagwise.verification.store", havingValue = "memory")
+public class InMemoryVerificationCodeStore implements VerificationCodeStore {
+    private static final int SWEEP_EVERY = 256;
+
+    private record Entry(String code, Instant expiresAt) {
+        private boolean isExpired(Instant now) {
+            return !now.isBefore(expiresAt);
+        }
+    }
+
+    private final Map<Long, Entry> codes = new ConcurrentHashMap<>();
+    private int writes;
+
+    @Override
+    public void save(Long userId, String code, Duration ttl) {
+        codes.put(userId, new Entry(code, Instant.now().plus(ttl)));
+        // Unsynchronized counter, an occasional missed or extra sweep is harmless
+        if (++writes % SWEEP_EVERY == 0) {
+            Instant now = Instant.now();
+            codes.values().removeIf(entry -> entry.isExpired(now));
+        }
+    }
+
+    @Override
+    public String find(Long userId) {
+        Entry entry = codes.get(userId);
+        return entry != null && !entry.isExpired(Instant.now()) ? entry.code() : null;
+    }
+
+    @Override
+    public Result consume(Long userId, String code) {
+        Result[] result = { Result.MISSING };
+        // compute runs atomically for the key, so two requests cannot both consume the code
+        codes.compute(userId, (id, entry) -> {
+            if (entry == null || entry.isExpired(Instant.now())) {
+                return null;
+            }
+            if (entry.code().equals(code)) {
+                result[0] = Result.CONSUMED;
+                return null;
+            }
+            result[0] = Result.MISMATCH;
+            return entry;
+        });
+        return result[0];
+    }
+
+    @Override
+    public void delete(Long userId) {
+        codes.remove(userId);
+    }
+}
@@ -10,9 +10,12 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
+import com.nli.tagwise.models.Role;
+import com.nli.tagwise.models.User;
 import com.nli.tagwise.models.UserDetailsImpl;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.io.Decoders;
@@ -33,6 +36,10 @@ public class JwtService {
     @Value("${jwt.expiration-time}")
     private Long expiration;
 
+    // Built once, the secret does not change while running
+    private Key signingKey;
+    private JwtParser parser;
+
     ///////////////////////////////////////////////////////////
     ///////////////////// Mane Thing //////////////////////////
     ///////////////////////////////////////////////////////////
@@ -61,12 +68,28 @@ public class JwtService {
     }
 
     public boolean isTokenValid(String token, UserDetailsImpl userDetails) {
-        final String username = extractEmail(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token);
+        final Claims claims = extractAllClaims(token);
+        return claims.getSubject().equals(userDetails.getUsername()) && !claims.getExpiration().before(new Date());
     }
 
-    private boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    // Principal rebuilt from the claims of a verified token, without reading the user table.
+    // Returns null for tokens that lack the userId or role claims.
+    public UserDetailsImpl toPrincipal(Claims claims) {
+        Number userId = claims.get("userId", Number.class);
+        String role = claims.get("role", String.class);
+        if (userId == null || role == null || claims.getSubject() == null) {
+            return null;
+        }
+        User user = new User();
+        user.setId(userId.longValue());
+        user.setEmail(claims.getSubject());
+        user.setRole(Role.valueOf(role));
+        user.setFirstName(claims.get("firstName", String.class));
+        user.setLastName(claims.get("lastName", String.class));
+        // Disabled and deleted users are rejected by the revocation check before this point
+        user.setEnabled(true);
+        user.setDeleted(false);
+        return new UserDetailsImpl(user);
     }
 
     public long getExpirationTime() {
@@ -77,10 +100,6 @@ public class JwtService {
     ///////////////////// Tools //////////////////////////////
     ///////////////////////////////////////////////////////////
 
-    private Date extractExpiration(String token) {
-        return extractClaim(token, Claims::getExpiration);
-    }
-
     public String generateToken(Map<String, Object> extraClaims, UserDetailsImpl userDetails) {
         return buildToken(extraClaims, userDetails, expiration);
     }
@@ -103,17 +122,18 @@ public class JwtService {
     }
 
     public Claims extractAllClaims(String token) {
-        return Jwts
-                .parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        if (parser == null) {
+            parser = Jwts.parserBuilder().setSigningKey(getSigningKey()).build();
+        }
+        return parser.parseClaimsJws(token).getBody();
     }
 
     public Key getSigningKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-        return Keys.hmacShaKeyFor(keyBytes);
+        if (signingKey == null) {
+            byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+            signingKey = Keys.hmacShaKeyFor(keyBytes);
+        }
+        return signingKey;
     }
 
 }
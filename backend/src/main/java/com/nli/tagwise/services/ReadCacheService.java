@@ -0,0 +1,366 @@
+package com.nli.tagwise.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.nli.tagwise.dto.CacheStatsDto;
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.events.DatasetUploadedEvent;
+import com.nli.tagwise.events.TaskAssignmentsChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Dataset metadata and summaries (list pages and details), cached in two tiers: a bounded
+// Caffeine cache per region in this process, then a Redis hash per (region, dataset) shared by
+// all instances. Task lists are not cached, their texts would make single entries too large.
+// Entries are dropped per dataset when it is uploaded or its assignments change; labels only
+// move the counters, so they are collected and dropped at most once per label flush interval.
+// Dataset lists span datasets and are dropped on any change. The Redis
+// side of an invalidation runs in the background, coalesced per dataset, and is broadcast so
+// other instances clear their local tier too. Concurrent misses on one entry are coalesced
+// into a single load. Each entry keeps the version stamp its caller read before the load, so
+// a response tagged with it can never carry a body older than the tag.
+@Service
+public class ReadCacheService {
+    public static final String DATASET_LIST = "dataset-list";
+    public static final String DATASET_DETAILS = "dataset-details";
+
+    private static final String PREFIX = "cache:";
+    private static final String CHANNEL = "cache:invalidated";
+    // Scope of the entries that are not tied to one dataset
+    private static final long ALL_DATASETS = 0;
+    // Redis calls are skipped for this long after one fails
+    private static final long REDIS_RETRY_MS = 30_000;
+
+    private record Key(long scope, String suffix) {
+    }
+
+    // Form of an entry in Redis
+    private record RedisEntry(String stamp, Object value) {
+    }
+
+    private static final class Region {
+        private final String name;
+        private final Cache<Key, Object> local;
+        private final LongAdder localHits = new LongAdder();
+        private final LongAdder redisHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder coalesced = new LongAdder();
+        // Loads running for a key, joined by concurrent misses on the same key
+        private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+        private Region(String name, Cache<Key, Object> local) {
+            this.name = name;
+            this.local = local;
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Duration redisTtl;
+    private final Duration flightTimeout;
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    private final Duration labelFlush;
+    private final ScheduledExecutorService remoteInvalidator;
+    // Datasets with a Redis invalidation queued but not started, later events join it
+    private final Set<Long> pendingRemote = ConcurrentHashMap.newKeySet();
+    // Datasets labeled since the last label flush
+    private final Set<Long> labeled = ConcurrentHashMap.newKeySet();
+    private volatile long redisRetryAt;
+
+    public ReadCacheService(
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            ObjectMapper objectMapper,
+            @Value("${tagwise.cache.enabled:true}") boolean enabled,
+            @Value("${tagwise.cache.local-max-size:2000}") long localMaxSize,
+            @Value("${tagwise.cache.local-ttl:1m}") Duration localTtl,
+            @Value("${tagwise.cache.redis-ttl:5m}") Duration redisTtl,
+            @Value("${tagwise.cache.flight-timeout:10s}") Duration flightTimeout,
+            @Value("${tagwise.cache.label-flush:5s}") Duration labelFlush) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.redisTtl = redisTtl;
+        this.flightTimeout = flightTimeout;
+        this.labelFlush = labelFlush;
+        for (String name : List.of(DATASET_LIST, DATASET_DETAILS)) {
+            regions.put(name, new Region(name, Caffeine.newBuilder()
+                    .maximumSize(localMaxSize)
+                    .expireAfterWrite(localTtl)
+                    .build()));
+        }
+        this.remoteInvalidator = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "read-cache-invalidate");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                invalidateLocal(Long.parseLong(new String(message.getBody())));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid cache invalidation message");
+            }
+        }, new ChannelTopic(CHANNEL));
+        long flushMs = labelFlush.toMillis();
+        remoteInvalidator.scheduleWithFixedDelay(this::flushLabeled, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cached value of a region entry, loaded and stored in both tiers on a miss.
+     * Concurrent misses on the same entry share one load: the first caller runs it and
+     * the others wait for its result, failures included. A caller that has waited longer than
+     * the flight timeout runs the loader itself, so a stuck load does not hold up every reader.
+     *
+     * @param datasetId The dataset the entry depends on, null when it spans datasets
+     * @param suffix    The rest of the key, the request parameters
+     * @param stamp     Version stamp read before this call, stored with a value loaded for it
+     * @return The value with the stamp it was stored with, to be used as its ETag
+     */
+    public <T> Stamped<T> get(String region, Long datasetId, String suffix, String stamp, TypeReference<T> type,
+            Supplier<T> loader) {
+        Region cache = regions.get(region);
+        Key key = new Key(datasetId != null ? datasetId : ALL_DATASETS, suffix);
+
+        if (enabled) {
+            @SuppressWarnings("unchecked")
+            Stamped<T> local = (Stamped<T>) cache.local.getIfPresent(key);
+            if (local != null) {
+                cache.localHits.increment();
+                return local;
+            }
+        }
+
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = cache.inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            cache.coalesced.increment();
+            return await(running, stamp, loader);
+        }
+        try {
+            Stamped<T> value = enabled ? load(cache, key, flight, stamp, type, loader)
+                    : new Stamped<>(stamp, loader.get());
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            cache.inFlight.remove(key, flight);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Stamped<T> await(CompletableFuture<Object> flight, String stamp, Supplier<T> loader) {
+        try {
+            return (Stamped<T>) flight.get(flightTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof Error cause) throw cause;
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            // Loaded without caching, the stuck flight still owns the entry
+            return new Stamped<>(stamp, loader.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+    }
+
+    private <T> Stamped<T> load(Region cache, Key key, CompletableFuture<Object> flight, String stamp,
+            TypeReference<T> type, Supplier<T> loader) {
+        JavaType javaType = objectMapper.getTypeFactory().constructType(type);
+        String redisKey = redisKey(cache.name, key.scope());
+        if (redisAvailable()) {
+            try {
+                Object json = redisTemplate.opsForHash().get(redisKey, key.suffix());
+                // Entries without a stamp were written before stamps were stored and are reloaded
+                JsonNode entry = json != null ? objectMapper.readTree((String) json) : null;
+                if (entry != null && entry.hasNonNull("stamp") && entry.hasNonNull("value")) {
+                    Stamped<T> value = new Stamped<>(entry.get("stamp").asText(),
+                            objectMapper.convertValue(entry.get("value"), javaType));
+                    cache.redisHits.increment();
+                    cache.local.put(key, value);
+                    return value;
+                }
+            } catch (Exception e) {
+                redisFailed(e);
+            }
+        }
+
+        cache.misses.increment();
+        Stamped<T> value = new Stamped<>(stamp, loader.get());
+        if (value.value() == null) {
+            return value;
+        }
+        // An invalidation during the load detached this flight: the value is returned to the
+        // callers that joined before it but not stored, it may predate the change
+        if (cache.inFlight.get(key) != flight) {
+            return value;
+        }
+        cache.local.put(key, value);
+        if (cache.inFlight.get(key) != flight) {
+            cache.local.invalidate(key);
+            return value;
+        }
+        if (redisAvailable()) {
+            try {
+                redisTemplate.opsForHash().put(redisKey, key.suffix(),
+                        objectMapper.writeValueAsString(new RedisEntry(stamp, value.value())));
+                redisTemplate.expire(redisKey, redisTtl);
+                // Detached while writing: the invalidation may have deleted the hash before the
+                // write, so the field is dropped here
+                if (cache.inFlight.get(key) != flight) {
+                    redisTemplate.opsForHash().delete(redisKey, key.suffix());
+                }
+            } catch (Exception e) {
+                redisFailed(e);
+            }
+        }
+        return value;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDatasetUploaded(DatasetUploadedEvent event) {
+        invalidateDataset(event.getDatasetId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssignmentsChanged(TaskAssignmentsChangedEvent event) {
+        invalidateDataset(event.getDatasetId());
+    }
+
+    // Entries keep the stamp they were loaded under, so until the flush they are served with
+    // their older ETag, never with one that claims the new label
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnotationSubmitted(AnnotationSubmittedEvent event) {
+        if (enabled) {
+            labeled.add(event.getDatasetId());
+        }
+    }
+
+    private void flushLabeled() {
+        try {
+            for (Long datasetId : List.copyOf(labeled)) {
+                labeled.remove(datasetId);
+                invalidateDataset(datasetId);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not flush labeled datasets from the read cache: " + e.getMessage());
+        }
+    }
+
+    // Drops every entry depending on the dataset, here at once and in Redis shortly after
+    public void invalidateDataset(long datasetId) {
+        if (!enabled) return;
+        invalidateLocal(datasetId);
+        if (pendingRemote.add(datasetId)) {
+            remoteInvalidator.execute(() -> {
+                // Removed before the work starts, so an event arriving now queues another round
+                pendingRemote.remove(datasetId);
+                invalidateRemote(datasetId);
+                // Reads between the two steps may have copied stale Redis entries back here
+                invalidateLocal(datasetId);
+            });
+        }
+    }
+
+    // Running loads are detached first, so later reads start a fresh one instead of joining them
+    private void invalidateLocal(long datasetId) {
+        Region lists = regions.get(DATASET_LIST);
+        lists.inFlight.clear();
+        lists.local.invalidateAll();
+        for (String region : List.of(DATASET_DETAILS)) {
+            Region cache = regions.get(region);
+            cache.inFlight.keySet().removeIf(key -> key.scope() == datasetId);
+            cache.local.asMap().keySet().removeIf(key -> key.scope() == datasetId);
+        }
+    }
+
+    private void invalidateRemote(long datasetId) {
+        if (!redisAvailable()) return;
+        try {
+            redisTemplate.delete(List.of(
+                    redisKey(DATASET_LIST, ALL_DATASETS),
+                    redisKey(DATASET_DETAILS, datasetId)));
+            redisTemplate.convertAndSend(CHANNEL, String.valueOf(datasetId));
+        } catch (RuntimeException e) {
+            redisFailed(e);
+        }
+    }
+
+    public List<CacheStatsDto> getStats() {
+        List<CacheStatsDto> stats = new ArrayList<>();
+        for (String name : List.of(DATASET_LIST, DATASET_DETAILS)) {
+            Region region = regions.get(name);
+            long localHits = region.localHits.sum();
+            long redisHits = region.redisHits.sum();
+            long misses = region.misses.sum();
+            long coalesced = region.coalesced.sum();
+            long total = localHits + redisHits + misses + coalesced;
+            stats.add(new CacheStatsDto(region.name, localHits, redisHits, misses, coalesced,
+                    region.local.estimatedSize(), total == 0 ? 0 : (double) (localHits + redisHits) / total));
+        }
+        return stats;
+    }
+
+    private static String redisKey(String region, long scope) {
+        return PREFIX + region + ":" + scope;
+    }
+
+    private boolean redisAvailable() {
+        return System.currentTimeMillis() >= redisRetryAt;
+    }
+
+    private void redisFailed(Exception e) {
+        redisRetryAt = System.currentTimeMillis() + REDIS_RETRY_MS;
+        System.err.println("Read cache: Redis unavailable, local tier only for "
+                + REDIS_RETRY_MS / 1000 + "s: " + e.getMessage());
+    }
+
+    @PreDestroy
+    void close() {
+        remoteInvalidator.shutdownNow();
+    }
+
+    /**
+     * @param stamp Version stamp read before the value was loaded, the ETag to send with it
+     * @param value The cached value
+     */
+    public record Stamped<T>(String stamp, T value) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.nli.tagwise.services;
+
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+// Codes kept in Redis under verify:<userId>, shared by all instances
+@Component
+@ConditionalOnProperty(name = "tagwise.verification.store", havingValue = "redis", matchIfMissing = true)
+public class RedisVerificationCodeStore implements VerificationCodeStore {
+    private static final String PREFIX = "verify:";
+
+    // -1 missing, 0 mismatch, 1 consumed: one round trip, no window between the read and the delete
+    private static final RedisScript<Long> CONSUME = new DefaultRedisScript<>(
+            "local stored = redis.call('GET', KEYS[1]) " +
+                    "if not stored then return -1 end " +
+                    "if stored == ARGV[1] then redis.call('DEL', KEYS[1]) return 1 end " +
+                    "return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+
+    public RedisVerificationCodeStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public void save(Long userId, String code, Duration ttl) {
+        redisTemplate.opsForValue().set(PREFIX + userId, code, ttl);
+    }
+
+    @Override
+    public String find(Long userId) {
+        return redisTemplate.opsForValue().get(PREFIX + userId);
+    }
+
+    @Override
+    public Result consume(Long userId, String code) {
+        Long outcome = redisTemplate.execute(CONSUME, List.of(PREFIX + userId), code);
+        if (outcome == null || outcome < 0) {
+            return Result.MISSING;
+        }
+        return outcome == 1 ? Result.CONSUMED : Result.MISMATCH;
+    }
+
+    @Override
+    public void delete(Long userId) {
+        redisTemplate.delete(PREFIX + userId);
+    }
+}
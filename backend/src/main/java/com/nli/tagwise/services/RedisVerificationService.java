@@ -1,67 +1,53 @@
 package com.nli.tagwise.services;
 
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import com.nli.tagwise.custom.CodeExpiredException;
 
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.security.SecureRandom;
+import java.time.Duration;
 
 // cette classe s'occupe de la gestion des codes de verif
 
 @Service
 public class RedisVerificationService {
 
-    // c'est un template qui permet d'interagir avec redis database
-    private final StringRedisTemplate redisTemplate;
-    private static final String PREFIX = "verify:"; // Redis key prefix
+    private static final Duration CODE_TTL = Duration.ofMinutes(15);
+    // Shared and thread-safe, seeded once
+    private static final SecureRandom RANDOM = new SecureRandom();
 
-    public RedisVerificationService(StringRedisTemplate redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    // stockage des codes: redis, ou en memoire si tagwise.verification.store=memory
+    private final VerificationCodeStore codeStore;
+
+    public RedisVerificationService(VerificationCodeStore codeStore) {
+        this.codeStore = codeStore;
     }
 
     // Generate and store a code (TTL = 15 mins)
     public String generateAndStoreCode(Long userId) {
         String code = generateRandomCode();
-        String key = PREFIX + userId;
-        redisTemplate.opsForValue().set(key, code, 15, TimeUnit.MINUTES);
+        codeStore.save(userId, code, CODE_TTL);
         return code;
     }
 
     public boolean isCodeValid(Long userId, String inputCode) {
-        String key = "verify:" + userId;
-
-        Boolean exists = redisTemplate.hasKey(key);
-        if (exists == null || !exists) {
+        VerificationCodeStore.Result result = codeStore.consume(userId, inputCode);
+        if (result == VerificationCodeStore.Result.MISSING) {
             throw new CodeExpiredException("Verification code expired or doesn't exist!");
         }
-
-        String storedCode = redisTemplate.opsForValue().get(key);
-        if (inputCode.equals(storedCode)) {
-            deleteCode(userId);
-            return true;
-        }
-        return false;
+        return result == VerificationCodeStore.Result.CONSUMED;
     }
 
     // Delete the code after successful verification
     public void deleteCode(Long userId) {
-        String key = PREFIX + userId;
-        redisTemplate.delete(key);
+        codeStore.delete(userId);
     }
 
     public String getCode(Long userId) {
-        String key = PREFIX + userId;
-        return redisTemplate.opsForValue().get(key);
+        return codeStore.find(userId);
     }
 
     private String generateRandomCode() {
-        return String.format("%06d", new Random().nextInt(999999));
+        return String.format("%06d", RANDOM.nextInt(1_000_000));
     }
-
-    // public static void main(String[] args) {
-    // RedisVerificationService rd = new RedisVerificationService(null);
-    // System.out.println(rd.generateRandomCode());
-    // }
 }
@@ -0,0 +1,404 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.events.TaskAssignmentsChangedEvent;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.models.LabelDictionary;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Serves annotators their next task by priority instead of id order. Each loaded dataset
+// keeps, per annotator, an indexed binary heap of the assigned tasks that annotator has not
+// labeled yet. Tasks still short of the redundancy target come first, then the most contested
+// ones (lowest share of the majority label), then the ones closest to the target.
+// Submissions re-position the task in the heaps of its annotators in O(log n).
+// A dataset is loaded by one caller at a time. Submissions arriving during the load are
+// buffered and their rows read again before the queue is installed, and a load that an
+// assignment change overlapped is thrown away and run again.
+@Service
+public class TaskQueueService {
+    // Task ids per query when rows touched during a load are read again
+    private static final int RELOAD_CHUNK = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final IDatasetRepo datasetRepo;
+    private final int redundancy;
+
+    private final Map<Long, DatasetQueue> queues = new ConcurrentHashMap<>();
+    // Events received while a dataset is being loaded, guarded by itself
+    private final Map<Long, List<AnnotationSubmittedEvent>> loading = new HashMap<>();
+    // Datasets whose assignments changed during their load, guarded by loading
+    private final Set<Long> reassigned = new HashSet<>();
+    private final Map<Long, CompletableFuture<DatasetQueue>> loads = new ConcurrentHashMap<>();
+
+    public TaskQueueService(
+            JdbcTemplate jdbcTemplate,
+            IDatasetRepo datasetRepo,
+            @Value("${tagwise.consensus.redundancy:3}") int redundancy) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.datasetRepo = datasetRepo;
+        this.redundancy = Math.max(1, redundancy);
+    }
+
+    /**
+     * Next task an annotator should label, in the given dataset or, when null, in any
+     * dataset the annotator belongs to.
+     *
+     * @return The task id, empty when nothing is left to label
+     */
+    public Optional<Long> nextTask(Long annotatorId, Long datasetId) {
+        List<Long> datasetIds = datasetId != null
+                ? List.of(datasetId)
+                : jdbcTemplate.queryForList(
+                        "SELECT dataset_id FROM dataset_annotator WHERE annotator_id = ?", Long.class, annotatorId);
+
+        TaskState best = null;
+        for (Long id : datasetIds) {
+            TaskState head = queue(id).peek(annotatorId);
+            if (head != null && (best == null || TaskState.PRIORITY.compare(head, best) < 0)) {
+                best = head;
+            }
+        }
+        return best != null ? Optional.of(best.taskId) : Optional.empty();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnotationSubmitted(AnnotationSubmittedEvent event) {
+        DatasetQueue queue;
+        synchronized (loading) {
+            List<AnnotationSubmittedEvent> buffered = loading.get(event.getDatasetId());
+            if (buffered != null) {
+                buffered.add(event);
+                return;
+            }
+            queue = queues.get(event.getDatasetId());
+        }
+        if (queue != null) {
+            queue.submitted(event.getTaskId(), event.getAnnotatorId(), event.getLabelCode());
+        }
+    }
+
+    // Rebuilt from the tables on next use
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssignmentsChanged(TaskAssignmentsChangedEvent event) {
+        synchronized (loading) {
+            queues.remove(event.getDatasetId());
+            if (loading.containsKey(event.getDatasetId())) {
+                reassigned.add(event.getDatasetId());
+            }
+        }
+    }
+
+    // One load per dataset at a time, a second caller waits for the running one
+    private DatasetQueue queue(Long datasetId) {
+        DatasetQueue queue = queues.get(datasetId);
+        if (queue != null) {
+            return queue;
+        }
+        CompletableFuture<DatasetQueue> mine = new CompletableFuture<>();
+        CompletableFuture<DatasetQueue> running = loads.putIfAbsent(datasetId, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) throw cause;
+                throw e;
+            }
+        }
+        try {
+            Dataset dataset = datasetRepo.findById(datasetId)
+                    .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+            int labels = LabelDictionary.parse(dataset.getClasses()).size();
+            DatasetQueue loaded;
+            do {
+                loaded = loadAndInstall(datasetId, labels);
+            } while (loaded == null);
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(datasetId, mine);
+        }
+    }
+
+    // Null when assignments changed during the load, the snapshot may list removed tasks
+    private DatasetQueue loadAndInstall(Long datasetId, int labels) {
+        synchronized (loading) {
+            loading.put(datasetId, new ArrayList<>());
+            reassigned.remove(datasetId);
+        }
+        try {
+            DatasetQueue queue = load(datasetId, labels);
+
+            // Events buffered during the load may be older than what it read: their rows are
+            // read again instead of replaying their labels. Events arriving meanwhile keep
+            // buffering and are applied once the heaps are built.
+            List<AnnotationSubmittedEvent> touched;
+            synchronized (loading) {
+                touched = loading.put(datasetId, new ArrayList<>());
+            }
+            reload(datasetId, queue, touched);
+
+            synchronized (loading) {
+                List<AnnotationSubmittedEvent> buffered = loading.remove(datasetId);
+                if (reassigned.remove(datasetId)) {
+                    return null;
+                }
+                buffered.forEach(e -> queue.labeled(e.getTaskId(), e.getAnnotatorId(), e.getLabelCode()));
+                queue.buildHeaps();
+                queues.put(datasetId, queue);
+            }
+            return queue;
+        } catch (RuntimeException e) {
+            synchronized (loading) {
+                loading.remove(datasetId);
+                reassigned.remove(datasetId);
+            }
+            throw e;
+        }
+    }
+
+    private DatasetQueue load(Long datasetId, int labels) {
+        DatasetQueue queue = new DatasetQueue(labels, redundancy);
+        jdbcTemplate.query(
+                "SELECT ta.task_id, ta.annotator_id FROM task_annotator ta " +
+                        "JOIN task t ON t.id = ta.task_id WHERE t.dataset_id = ?",
+                (ResultSet rs) -> {
+                    queue.assigned(rs.getLong(1), rs.getLong(2));
+                },
+                datasetId);
+        jdbcTemplate.query(
+                "SELECT task_id, annotator_id, label_code FROM annotation WHERE dataset_id = ?",
+                (ResultSet rs) -> {
+                    queue.labeled(rs.getLong(1), rs.getLong(2), rs.getShort(3));
+                },
+                datasetId);
+        return queue;
+    }
+
+    private void reload(Long datasetId, DatasetQueue queue, List<AnnotationSubmittedEvent> events) {
+        List<Long> taskIds = new ArrayList<>(new LinkedHashSet<>(
+                events.stream().map(AnnotationSubmittedEvent::getTaskId).toList()));
+        for (int from = 0; from < taskIds.size(); from += RELOAD_CHUNK) {
+            List<Long> chunk = taskIds.subList(from, Math.min(from + RELOAD_CHUNK, taskIds.size()));
+            List<Object> args = new ArrayList<>(chunk.size() + 1);
+            args.add(datasetId);
+            args.addAll(chunk);
+            jdbcTemplate.query(
+                    "SELECT task_id, annotator_id, label_code FROM annotation WHERE dataset_id = ? AND task_id IN ("
+                            + String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    (ResultSet rs) -> {
+                        queue.labeled(rs.getLong(1), rs.getLong(2), rs.getShort(3));
+                    },
+                    args.toArray());
+        }
+    }
+
+    private static final class DatasetQueue {
+        private final int labels;
+        private final int redundancy;
+        private final Map<Long, TaskState> tasks = new HashMap<>();
+        private final Map<Long, IndexedHeap> heaps = new HashMap<>();
+
+        private DatasetQueue(int labels, int redundancy) {
+            this.labels = labels;
+            this.redundancy = redundancy;
+        }
+
+        private void assigned(long taskId, long annotatorId) {
+            tasks.computeIfAbsent(taskId, id -> new TaskState(id, labels, redundancy)).addAssignee(annotatorId);
+        }
+
+        private void labeled(long taskId, long annotatorId, short code) {
+            TaskState task = tasks.get(taskId);
+            if (task != null && code >= 0 && code < labels) {
+                task.setLabel(annotatorId, code);
+            }
+        }
+
+        private void buildHeaps() {
+            for (TaskState task : tasks.values()) {
+                for (int i = 0; i < task.assigneeCount; i++) {
+                    if (task.codes[i] < 0) {
+                        heaps.computeIfAbsent(task.assignees[i], id -> new IndexedHeap()).add(task);
+                    }
+                }
+            }
+        }
+
+        private synchronized TaskState peek(long annotatorId) {
+            IndexedHeap heap = heaps.get(annotatorId);
+            return heap != null ? heap.peek() : null;
+        }
+
+        private synchronized void submitted(long taskId, long annotatorId, short code) {
+            TaskState task = tasks.get(taskId);
+            if (task == null || code < 0 || code >= labels) return;
+            task.setLabel(annotatorId, code);
+
+            IndexedHeap own = heaps.get(annotatorId);
+            if (own != null) {
+                own.remove(task);
+            }
+            for (int i = 0; i < task.assigneeCount; i++) {
+                IndexedHeap heap = heaps.get(task.assignees[i]);
+                if (heap != null && heap.contains(task)) {
+                    heap.update(task);
+                }
+            }
+        }
+    }
+
+    private static final class TaskState {
+        // Active tasks first, then the most contested, then the fewest labels missing, then id order
+        private static final Comparator<TaskState> PRIORITY = Comparator
+                .comparing((TaskState t) -> t.remaining() == 0)
+                .thenComparingDouble(t -> t.majorityShare)
+                .thenComparingInt(TaskState::remaining)
+                .thenComparingLong(t -> t.taskId);
+
+        private final long taskId;
+        private final int redundancy;
+        private final int[] votes;
+        private long[] assignees = new long[4];
+        private short[] codes = new short[4]; // -1 while the assignee has not labeled the task
+        private int assigneeCount;
+        private int labelCount;
+        private Map<Long, Short> otherCodes; // Labels by annotators no longer assigned, created on first use
+        private double majorityShare = 1;
+
+        private TaskState(long taskId, int labels, int redundancy) {
+            this.taskId = taskId;
+            this.redundancy = redundancy;
+            this.votes = new int[labels];
+        }
+
+        private void addAssignee(long annotatorId) {
+            if (assigneeCount == assignees.length) {
+                assignees = Arrays.copyOf(assignees, assigneeCount * 2);
+                codes = Arrays.copyOf(codes, assigneeCount * 2);
+            }
+            assignees[assigneeCount] = annotatorId;
+            codes[assigneeCount] = -1;
+            assigneeCount++;
+        }
+
+        private void setLabel(long annotatorId, short code) {
+            int slot = -1;
+            for (int i = 0; i < assigneeCount; i++) {
+                if (assignees[i] == annotatorId) slot = i;
+            }
+            // A re-submission replaces the annotator's previous vote, assigned or not
+            short previous;
+            if (slot >= 0) {
+                previous = codes[slot];
+                codes[slot] = code;
+            } else {
+                if (otherCodes == null) otherCodes = new HashMap<>();
+                Short stored = otherCodes.put(annotatorId, code);
+                previous = stored != null ? stored : -1;
+            }
+            if (previous >= 0) {
+                votes[previous]--;
+                labelCount--;
+            }
+            votes[code]++;
+            labelCount++;
+
+            int max = 0;
+            for (int v : votes) max = Math.max(max, v);
+            majorityShare = labelCount < 2 ? 1 : (double) max / labelCount;
+        }
+
+        private int remaining() {
+            return Math.max(0, redundancy - labelCount);
+        }
+    }
+
+    // Binary min-heap over PRIORITY with a task id -> slot index for O(log n) update and removal
+    private static final class IndexedHeap {
+        private TaskState[] items = new TaskState[16];
+        private int size;
+        private final Map<Long, Integer> slots = new HashMap<>();
+
+        private TaskState peek() {
+            return size > 0 ? items[0] : null;
+        }
+
+        private boolean contains(TaskState task) {
+            return slots.containsKey(task.taskId);
+        }
+
+        private void add(TaskState task) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size] = task;
+            slots.put(task.taskId, size);
+            siftUp(size++);
+        }
+
+        private void remove(TaskState task) {
+            Integer slot = slots.remove(task.taskId);
+            if (slot == null) return;
+            size--;
+            if (slot == size) {
+                items[size] = null;
+                return;
+            }
+            items[slot] = items[size];
+            items[size] = null;
+            slots.put(items[slot].taskId, slot);
+            siftDown(siftUp(slot));
+        }
+
+        private void update(TaskState task) {
+            Integer slot = slots.get(task.taskId);
+            if (slot != null) {
+                siftDown(siftUp(slot));
+            }
+        }
+
+        private int siftUp(int slot) {
+            while (slot > 0) {
+                int parent = (slot - 1) / 2;
+                if (TaskState.PRIORITY.compare(items[slot], items[parent]) >= 0) break;
+                swap(slot, parent);
+                slot = parent;
+            }
+            return slot;
+        }
+
+        private void siftDown(int slot) {
+            while (true) {
+                int left = slot * 2 + 1;
+                if (left >= size) return;
+                int child = left + 1 < size && TaskState.PRIORITY.compare(items[left + 1], items[left]) < 0
+                        ? left + 1
+                        : left;
+                if (TaskState.PRIORITY.compare(items[child], items[slot]) >= 0) return;
+                swap(slot, child);
+                slot = child;
+            }
+        }
+
+        private void swap(int a, int b) {
+            TaskState item = items[a];
+            items[a] = items[b];
+            items[b] = item;
+            slots.put(items[a].taskId, a);
+            slots.put(items[b].taskId, b);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.SampleStrata;
+import com.nli.tagwise.dto.TaskSampleDto;
+import com.nli.tagwise.dto.TextPairDto;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.models.LabelDictionary;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Draws task samples without loading the dataset. Plain uniform samples probe random
+// ids against the primary key; stratified samples stream (stratum, task id) pairs from
+// an index-only cursor and keep a fixed-size reservoir per stratum.
+@Service
+public class TaskSamplingService {
+    private static final int PROBE_ROUNDS = 8;
+    private static final int STREAM_FETCH_SIZE = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskTextService taskTextService;
+    private final IDatasetRepo datasetRepo;
+
+    public TaskSamplingService(JdbcTemplate jdbcTemplate, TaskTextService taskTextService, IDatasetRepo datasetRepo) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.taskTextService = taskTextService;
+        this.datasetRepo = datasetRepo;
+    }
+
+    /**
+     * Samples up to {@code size} tasks of a dataset, per stratum when strata is not NONE.
+     *
+     * @param completed for ANNOTATOR keeps only rows with that completion flag, for
+     *                  NONE and COMPLETION keeps only tasks in that completion state
+     * @param seed      fixed seed for a reproducible sample, random when null
+     */
+    @Transactional(readOnly = true)
+    public List<TaskSampleDto> sample(Long datasetId, int size, SampleStrata strata, Boolean completed, Long seed) {
+        Dataset dataset = datasetRepo.findById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
+        if (size <= 0) {
+            return new ArrayList<>();
+        }
+        Random random = seed != null ? new Random(seed) : new Random();
+
+        if (strata == SampleStrata.NONE && completed == null) {
+            List<Long> ids = probeRandomIds(datasetId, size, random);
+            return List.of(new TaskSampleDto("all", null, loadPairs(ids)));
+        }
+
+        Map<String, Reservoir> reservoirs = switch (strata) {
+            case ANNOTATOR -> streamReservoirs(annotatorStream(datasetId, completed), size, random);
+            case LABEL -> streamReservoirs(labelStream(datasetId), size, random);
+            default -> streamReservoirs(completionStream(datasetId), size, random);
+        };
+        if (strata != SampleStrata.ANNOTATOR && completed != null) {
+            reservoirs.keySet().retainAll(Set.of(completed ? "completed" : "pending"));
+        }
+        if (strata == SampleStrata.NONE) {
+            reservoirs.values().forEach(r -> r.stratum = "all");
+        }
+        if (strata == SampleStrata.LABEL) {
+            LabelDictionary dictionary = LabelDictionary.parse(dataset.getClasses());
+            reservoirs.values().forEach(r -> r.stratum = dictionary.decode(Integer.parseInt(r.stratum)));
+        }
+
+        List<Long> allIds = reservoirs.values().stream()
+                .flatMap(r -> r.sample().stream())
+                .collect(Collectors.toList());
+        Map<Long, TextPairDto> pairs = loadPairs(allIds).stream()
+                .collect(Collectors.toMap(TextPairDto::getId, Function.identity()));
+
+        return reservoirs.values().stream()
+                .map(r -> new TaskSampleDto(
+                        r.stratum,
+                        r.seen,
+                        r.sample().stream().map(pairs::get).filter(Objects::nonNull).collect(Collectors.toList())))
+                .collect(Collectors.toList());
+    }
+
+    // Rejection sampling over [min(id), max(id)] of the dataset: each round checks a
+    // batch of random candidate ids in one IN query, so hits are uniform over real rows
+    private List<Long> probeRandomIds(Long datasetId, int size, Random random) {
+        Map<String, Object> bounds = jdbcTemplate.queryForMap(
+                "SELECT MIN(id) AS lo, MAX(id) AS hi FROM task WHERE dataset_id = ?", datasetId);
+        if (bounds.get("lo") == null) {
+            return new ArrayList<>();
+        }
+        long lo = ((Number) bounds.get("lo")).longValue();
+        long hi = ((Number) bounds.get("hi")).longValue();
+
+        long range = hi - lo + 1;
+
+        // Small ranges would run out of distinct candidates, they are read whole and shuffled
+        if (range < 2L * size) {
+            List<Long> ids = new ArrayList<>(jdbcTemplate.queryForList(
+                    "SELECT id FROM task WHERE dataset_id = ? ORDER BY id", Long.class, datasetId));
+            if (ids.size() <= size) {
+                return ids;
+            }
+            Collections.shuffle(ids, random);
+            return new ArrayList<>(ids.subList(0, size));
+        }
+
+        Set<Long> chosen = new LinkedHashSet<>();
+        for (int round = 0; round < PROBE_ROUNDS && chosen.size() < size; round++) {
+            // Never ask for more distinct candidates than the range has left
+            int wanted = (int) Math.min((size - chosen.size()) * 2L, range - chosen.size());
+            Set<Long> candidates = new HashSet<>();
+            while (candidates.size() < wanted) {
+                long candidate = lo + (long) (random.nextDouble() * range);
+                if (!chosen.contains(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+            String placeholders = candidates.stream().map(c -> "?").collect(Collectors.joining(","));
+            List<Object> args = new ArrayList<>();
+            args.add(datasetId);
+            args.addAll(candidates);
+            List<Long> hits = jdbcTemplate.queryForList(
+                    "SELECT id FROM task WHERE dataset_id = ? AND id IN (" + placeholders + ")",
+                    Long.class, args.toArray());
+            Collections.shuffle(hits, random);
+            for (Long hit : hits) {
+                if (chosen.size() == size) break;
+                chosen.add(hit);
+            }
+        }
+
+        // Very sparse id ranges (other datasets interleaved) fall back to a reservoir over the ids
+        if (chosen.size() < size) {
+            Reservoir reservoir = streamReservoirs(con -> {
+                PreparedStatement ps = con.prepareStatement("SELECT 'all', id FROM task WHERE dataset_id = ?");
+                ps.setLong(1, datasetId);
+                return ps;
+            }, size, random).get("all");
+            return reservoir != null ? reservoir.sample() : new ArrayList<>();
+        }
+        return new ArrayList<>(chosen);
+    }
+
+    private PreparedStatementCreator annotatorStream(Long datasetId, Boolean completed) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT CAST(cs.annotator_id AS CHAR), cs.task_id FROM task_completion_status cs " +
+                            "JOIN task t ON t.id = cs.task_id WHERE t.dataset_id = ?" +
+                            (completed != null ? " AND cs.completed = ?" : ""));
+            ps.setLong(1, datasetId);
+            if (completed != null) {
+                ps.setBoolean(2, completed);
+            }
+            return ps;
+        };
+    }
+
+    // Strata are label codes here, renamed to label text once sampled
+    private PreparedStatementCreator labelStream(Long datasetId) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT CAST(a.label_code AS CHAR), a.task_id FROM annotation a WHERE a.dataset_id = ?");
+            ps.setLong(1, datasetId);
+            return ps;
+        };
+    }
+
+    private PreparedStatementCreator completionStream(Long datasetId) {
+        return con -> {
+            PreparedStatement ps = con.prepareStatement(
+                    "SELECT CASE WHEN SUM(CASE WHEN cs.completed THEN 0 ELSE 1 END) = 0 " +
+                            "THEN 'completed' ELSE 'pending' END, t.id FROM task t " +
+                            "LEFT JOIN task_completion_status cs ON cs.task_id = t.id " +
+                            "WHERE t.dataset_id = ? GROUP BY t.id");
+            ps.setLong(1, datasetId);
+            return ps;
+        };
+    }
+
+    // Streams (stratum, task id) rows and keeps a uniform reservoir of each stratum (algorithm R)
+    private Map<String, Reservoir> streamReservoirs(PreparedStatementCreator query, int size, Random random) {
+        Map<String, Reservoir> reservoirs = new LinkedHashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = query.createPreparedStatement(con);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (ResultSet rs) -> {
+            String stratum = rs.getString(1);
+            reservoirs.computeIfAbsent(stratum != null ? stratum : "none", key -> new Reservoir(key, size))
+                    .offer(rs.getLong(2), random);
+        });
+        return reservoirs;
+    }
+
+    private List<TextPairDto> loadPairs(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, TextPairDto> texts = taskTextService.findTexts(ids);
+        return ids.stream().map(texts::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    private static final class Reservoir {
+        private String stratum;
+        private final long[] ids;
+        private long seen;
+
+        private Reservoir(String stratum, int size) {
+            this.stratum = stratum;
+            this.ids = new long[size];
+        }
+
+        private void offer(long id, Random random) {
+            if (seen < ids.length) {
+                ids[(int) seen] = id;
+            } else {
+                long slot = (long) (random.nextDouble() * (seen + 1));
+                if (slot < ids.length) {
+                    ids[(int) slot] = id;
+                }
+            }
+            seen++;
+        }
+
+        private List<Long> sample() {
+            int filled = (int) Math.min(seen, ids.length);
+            List<Long> sample = new ArrayList<>(filled);
+            for (int i = 0; i < filled; i++) {
+                sample.add(ids[i]);
+            }
+            return sample;
+        }
+    }
+}
@@ -1,34 +1,69 @@
 package com.nli.tagwise.services;
 
+import com.nli.tagwise.dto.AnnotationSubmissionDto;
 import com.nli.tagwise.dto.AssignAnnotatorDto;
+import com.nli.tagwise.dto.BatchItemResultDto;
+import com.nli.tagwise.dto.BatchSubmissionDto;
+import com.nli.tagwise.dto.SubmissionResultDto;
+import com.nli.tagwise.dto.TaskDeltaDto;
 import com.nli.tagwise.dto.TaskDto;
+import com.nli.tagwise.dto.TextPairDto;
+import com.nli.tagwise.dto.WorkPackageDto;
+import com.nli.tagwise.dto.WorkPackageTaskView;
+import com.nli.tagwise.events.TaskAssignmentsChangedEvent;
+import com.nli.tagwise.models.AnnotatorChangeType;
 import com.nli.tagwise.models.Dataset;
 import com.nli.tagwise.models.DatasetAnnotator;
+import com.nli.tagwise.models.LabelDictionary;
 import com.nli.tagwise.models.Task;
 import com.nli.tagwise.models.User;
 import com.nli.tagwise.repository.IDatasetAnnotatorRepo;
 import com.nli.tagwise.repository.IDatasetRepo;
 import com.nli.tagwise.repository.ITaskRepo;
 import com.nli.tagwise.repository.IUserRepo;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.ResultSet;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class TaskService {
+        private static final int MAX_BATCH_SIZE = 5000;
+        private static final List<String> TASK_FIELDS = List.of(
+                        "id", "datasetId", "text1", "text2", "annotatorIds", "annotations", "completionStatus");
+
         private final ITaskRepo taskRepo;
         private final IDatasetRepo datasetRepo;
         private final IUserRepo userRepo;
         private final IDatasetAnnotatorRepo datasetAnnotatorRepo;
+        private final AnnotationService annotationService;
+        private final AnnotationJournal annotationJournal;
+        private final ApplicationEventPublisher eventPublisher;
+        private final TaskQueueService taskQueueService;
+        private final JdbcTemplate jdbcTemplate;
+        private final TaskTextService taskTextService;
+        private final AnnotatorChangeLog changeLog;
 
         public TaskService(ITaskRepo taskRepo, IDatasetRepo datasetRepo, IUserRepo userRepo,
-                        IDatasetAnnotatorRepo datasetAnnotatorRepo) {
+                        IDatasetAnnotatorRepo datasetAnnotatorRepo, AnnotationService annotationService,
+                        AnnotationJournal annotationJournal, ApplicationEventPublisher eventPublisher,
+                        TaskQueueService taskQueueService, JdbcTemplate jdbcTemplate, TaskTextService taskTextService,
+                        AnnotatorChangeLog changeLog) {
                 this.taskRepo = taskRepo;
                 this.datasetRepo = datasetRepo;
                 this.userRepo = userRepo;
                 this.datasetAnnotatorRepo = datasetAnnotatorRepo;
+                this.annotationService = annotationService;
+                this.annotationJournal = annotationJournal;
+                this.eventPublisher = eventPublisher;
+                this.taskQueueService = taskQueueService;
+                this.jdbcTemplate = jdbcTemplate;
+                this.taskTextService = taskTextService;
+                this.changeLog = changeLog;
         }
 
         @Transactional
@@ -56,8 +91,11 @@ public class TaskService {
                 // Si aucune tâche, rien à répartir (elles sont créées lors de l'import du
                 // dataset)
                 if (!existingTasks.isEmpty()) {
+                        Map<Long, Set<Long>> before = changeLog.assignments(dataset.getId());
                         divideTasksAmongAnnotators(existingTasks, annotators);
                         taskRepo.saveAll(existingTasks);
+                        changeLog.recordReassignment(dataset.getId(), before, existingTasks);
+                        eventPublisher.publishEvent(new TaskAssignmentsChangedEvent(dataset.getId()));
                 }
         }
 
@@ -110,6 +148,9 @@ public class TaskService {
                         task.getCompletionStatus().remove(annotator);
                 }
                 taskRepo.saveAll(tasks);
+                changeLog.record(annotatorId, datasetId, AnnotatorChangeType.UNASSIGNED,
+                                tasks.stream().map(Task::getId).collect(Collectors.toList()));
+                eventPublisher.publishEvent(new TaskAssignmentsChangedEvent(datasetId));
         }
 
         @Transactional(readOnly = true)
@@ -117,22 +158,55 @@ public class TaskService {
                 User annotator = userRepo.findById(annotatorId)
                                 .orElseThrow(() -> new IllegalArgumentException("Annotator not found"));
 
-                List<Task> tasks = taskRepo.findByAnnotator(annotator);
+                return toAnnotatorDtos(annotator, taskRepo.findByAnnotator(annotator));
+        }
+
+        /**
+         * Changes to the task list of an annotator since the version returned by a previous
+         * call: tasks assigned or labeled since then come back as in
+         * {@link #getTasksForAnnotator}, tasks no longer assigned by id only. Without a
+         * version, or when the log no longer covers it, the whole list is sent as a reset.
+         */
+        @Transactional(readOnly = true)
+        public TaskDeltaDto getTaskChanges(Long annotatorId, Long since) {
+                User annotator = userRepo.findById(annotatorId)
+                                .orElseThrow(() -> new IllegalArgumentException("Annotator not found"));
+
+                AnnotatorChangeLog.Changes changes = changeLog.changesSince(annotatorId, since);
+                if (changes.reset()) {
+                        return new TaskDeltaDto(changes.version(), true,
+                                        toAnnotatorDtos(annotator, taskRepo.findByAnnotator(annotator)), List.of());
+                }
+                if (changes.taskIds().isEmpty()) {
+                        return new TaskDeltaDto(changes.version(), false, List.of(), List.of());
+                }
+
+                List<Task> assigned = taskRepo.findByAnnotatorIdAndIdIn(annotatorId, changes.taskIds());
+                Set<Long> assignedIds = assigned.stream().map(Task::getId).collect(Collectors.toSet());
+                List<Long> removed = changes.taskIds().stream()
+                                .filter(id -> !assignedIds.contains(id))
+                                .collect(Collectors.toList());
+                return new TaskDeltaDto(changes.version(), false, toAnnotatorDtos(annotator, assigned), removed);
+        }
+
+        // Annotator view of tasks: own completion status and dataset metadata
+        private List<TaskDto> toAnnotatorDtos(User annotator, List<Task> tasks) {
+                Map<Long, List<String>> labels = annotationService.getLabelsByTask(tasks);
+                Map<Long, TextPairDto> texts = findTexts(tasks);
 
                 return tasks.stream().map(task -> {
                         TaskDto dto = new TaskDto();
                         dto.setId(task.getId());
                         dto.setDatasetId(task.getDataset().getId());
-                        dto.setText1(task.getText1());
-                        dto.setText2(task.getText2());
-                        dto.setAnnotations(task.getAnnotations() != null ? task.getAnnotations() : new ArrayList<>());
+                        setTexts(dto, texts.get(task.getId()));
+                        dto.setAnnotations(labels.get(task.getId()));
 
                         // Completion status
                         Map<Long, Boolean> status = new HashMap<>();
                         Boolean completed = task.getCompletionStatus() != null
                                         ? task.getCompletionStatus().get(annotator)
                                         : false;
-                        status.put(annotatorId, completed != null ? completed : false);
+                        status.put(annotator.getId(), completed != null ? completed : false);
                         dto.setCompletionStatus(status);
 
                         // Metadata
@@ -146,26 +220,60 @@ public class TaskService {
                 }).collect(Collectors.toList());
         }
 
+        /**
+         * Tasks of an annotator in the work package format: each dataset's name and parsed
+         * labels are sent once, tasks carry only their own fields and the dataset id.
+         */
+        @Transactional(readOnly = true)
+        public WorkPackageDto getWorkPackage(Long annotatorId) {
+                if (!userRepo.existsById(annotatorId)) {
+                        throw new IllegalArgumentException("Annotator not found");
+                }
+                List<WorkPackageTaskView> rows = taskRepo.findWorkPackageRows(annotatorId);
+
+                Set<Long> datasetIds = rows.stream().map(WorkPackageTaskView::getDatasetId)
+                                .collect(Collectors.toCollection(LinkedHashSet::new));
+                Map<Long, LabelDictionary> dictionaries = new HashMap<>();
+                List<WorkPackageDto.Dataset> datasets = new ArrayList<>();
+                for (Dataset dataset : datasetRepo.findAllById(datasetIds)) {
+                        LabelDictionary dictionary = annotationService.getLabelDictionary(dataset);
+                        dictionaries.put(dataset.getId(), dictionary);
+                        datasets.add(new WorkPackageDto.Dataset(dataset.getId(), dataset.getName(), dictionary.getLabels()));
+                }
+
+                List<WorkPackageDto.Task> tasks = new ArrayList<>(rows.size());
+                for (WorkPackageTaskView row : rows) {
+                        String label = row.getLabelCode() != null
+                                        ? dictionaries.get(row.getDatasetId()).decode(row.getLabelCode())
+                                        : null;
+                        tasks.add(new WorkPackageDto.Task(row.getId(), row.getDatasetId(),
+                                        TaskTextCodec.decode(row.getText1()), TaskTextCodec.decode(row.getText2()),
+                                        Boolean.TRUE.equals(row.getCompleted()), label, row.getCompleted() == null));
+                }
+                return new WorkPackageDto(datasets, tasks);
+        }
+
         @Transactional(readOnly = true)
         public List<TaskDto> getTasksForDataset(Long datasetId) {
                 Dataset dataset = datasetRepo.findById(datasetId)
                                 .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
 
                 List<Task> tasks = taskRepo.findByDataset(dataset);
+                Map<Long, List<String>> labels = annotationService.getLabelsByTask(tasks);
+                Map<Long, TextPairDto> texts = findTexts(tasks);
 
                 return tasks.stream().map(task -> {
                         TaskDto dto = new TaskDto();
                         dto.setId(task.getId());
                         dto.setDatasetId(datasetId);
-                        dto.setText1(task.getText1());
-                        dto.setText2(task.getText2());
+                        setTexts(dto, texts.get(task.getId()));
 
                         List<Long> annotatorIds = task.getAnnotators().stream()
                                         .map(User::getId)
                                         .collect(Collectors.toList());
                         dto.setAnnotatorIds(annotatorIds);
 
-                        dto.setAnnotations(task.getAnnotations());
+                        dto.setAnnotations(labels.get(task.getId()));
 
                         Map<Long, Boolean> completionStatus = new HashMap<>();
                         task.getCompletionStatus()
@@ -176,47 +284,105 @@ public class TaskService {
                 }).collect(Collectors.toList());
         }
 
-        @Transactional
-        public TaskDto submitAnnotation(Long taskId, Long annotatorId, String annotation) {
-                Task task = taskRepo.findById(taskId)
-                                .orElseThrow(() -> new IllegalArgumentException("Task not found"));
-                User annotator = userRepo.findById(annotatorId)
-                                .orElseThrow(() -> new IllegalArgumentException("Annotator not found"));
-
-                if (!task.getAnnotators().contains(annotator)) {
-                        throw new IllegalArgumentException("Annotator not assigned to this task");
+        /**
+         * Tasks of a dataset with only the requested fields. Plain columns are selected
+         * individually, so unrequested texts are never read; annotatorIds, annotations and
+         * completionStatus each cost one dataset-wide query, run only when requested.
+         */
+        @Transactional(readOnly = true)
+        public List<TaskDto> getTasksForDataset(Long datasetId, String fields) {
+                if (fields == null) {
+                        return getTasksForDataset(datasetId);
                 }
+                FieldSelection selection = FieldSelection.parse(fields, TASK_FIELDS);
+                Dataset dataset = datasetRepo.findById(datasetId)
+                                .orElseThrow(() -> new IllegalArgumentException("Dataset not found"));
 
-                task.addAnnotation(annotation);
-                task.setAnnotatorCompletionStatus(annotator, true);
-
-                task = taskRepo.save(task);
-
-                TaskDto dto = new TaskDto();
-                dto.setId(task.getId());
-                dto.setDatasetId(task.getDataset().getId());
-                dto.setText1(task.getText1());
-                dto.setText2(task.getText2());
-
-                List<Long> annotatorIds = task.getAnnotators().stream()
-                                .map(User::getId)
-                                .collect(Collectors.toList());
-                dto.setAnnotatorIds(annotatorIds);
+                // The side table is only joined when a text is requested
+                boolean withTexts = selection.includes("text1") || selection.includes("text2");
+                StringBuilder select = new StringBuilder("SELECT t.id");
+                if (selection.includes("text1")) select.append(", tt.text1");
+                if (selection.includes("text2")) select.append(", tt.text2");
+                select.append(" FROM task t");
+                if (withTexts) select.append(" LEFT JOIN task_text tt ON tt.task_id = t.id");
+                select.append(" WHERE t.dataset_id = ? ORDER BY t.id");
+
+                Map<Long, TaskDto> tasks = new LinkedHashMap<>();
+                jdbcTemplate.query(select.toString(), (ResultSet rs) -> {
+                        TaskDto dto = new TaskDto();
+                        dto.setId(rs.getLong("id"));
+                        if (selection.includes("datasetId")) dto.setDatasetId(datasetId);
+                        if (selection.includes("text1")) dto.setText1(TaskTextCodec.decode(rs.getString("text1")));
+                        if (selection.includes("text2")) dto.setText2(TaskTextCodec.decode(rs.getString("text2")));
+                        if (selection.includes("annotatorIds")) dto.setAnnotatorIds(new ArrayList<>());
+                        if (selection.includes("annotations")) dto.setAnnotations(new ArrayList<>());
+                        if (selection.includes("completionStatus")) dto.setCompletionStatus(new HashMap<>());
+                        tasks.put(dto.getId(), dto);
+                }, datasetId);
+
+                if (selection.includes("annotatorIds")) {
+                        jdbcTemplate.query("SELECT ta.task_id, ta.annotator_id FROM task_annotator ta " +
+                                        "JOIN task t ON t.id = ta.task_id WHERE t.dataset_id = ?",
+                                        (ResultSet rs) -> {
+                                                TaskDto dto = tasks.get(rs.getLong(1));
+                                                if (dto != null) dto.getAnnotatorIds().add(rs.getLong(2));
+                                        }, datasetId);
+                }
+                if (selection.includes("annotations")) {
+                        annotationService.getLegacyLabels(datasetId).forEach((taskId, legacy) -> {
+                                TaskDto dto = tasks.get(taskId);
+                                if (dto != null) dto.getAnnotations().addAll(legacy);
+                        });
+                        LabelDictionary dictionary = annotationService.getLabelDictionary(dataset);
+                        jdbcTemplate.query("SELECT task_id, label_code FROM annotation WHERE dataset_id = ? ORDER BY id",
+                                        (ResultSet rs) -> {
+                                                TaskDto dto = tasks.get(rs.getLong(1));
+                                                if (dto != null) dto.getAnnotations().add(dictionary.decode(rs.getInt(2)));
+                                        }, datasetId);
+                }
+                if (selection.includes("completionStatus")) {
+                        jdbcTemplate.query("SELECT cs.task_id, cs.annotator_id, cs.completed FROM task_completion_status cs " +
+                                        "JOIN task t ON t.id = cs.task_id WHERE t.dataset_id = ?",
+                                        (ResultSet rs) -> {
+                                                TaskDto dto = tasks.get(rs.getLong(1));
+                                                if (dto != null) dto.getCompletionStatus().put(rs.getLong(2), rs.getBoolean(3));
+                                        }, datasetId);
+                }
+                return new ArrayList<>(tasks.values());
+        }
 
-                dto.setAnnotations(task.getAnnotations());
+        @Transactional
+        public TaskDto submitAnnotation(Long taskId, Long annotatorId, String annotation) {
+                annotationService.submit(taskId, annotatorId, annotation, null, null);
+                return getTask(taskId);
+        }
 
-                Map<Long, Boolean> completionStatus = new HashMap<>();
-                task.getCompletionStatus().forEach((user, status) -> completionStatus.put(user.getId(), status));
-                dto.setCompletionStatus(completionStatus);
+        // Lightweight path: writes through the annotation upsert and returns only the stored state.
+        // In write-behind mode unconditional submissions are journaled and stored later instead.
+        public SubmissionResultDto submitAnnotation(Long taskId, AnnotationSubmissionDto submission) {
+                if (annotationJournal.isEnabled() && submission.getExpectedVersion() == null) {
+                        return annotationJournal.submit(taskId, submission.getAnnotatorId(), submission.getLabel(),
+                                        submission.getSubmissionId());
+                }
+                return annotationService.submit(taskId, submission.getAnnotatorId(), submission.getLabel(),
+                                submission.getSubmissionId(), submission.getExpectedVersion());
+        }
 
-                // Add metadata
-                Map<String, Object> metadata = new HashMap<>();
-                metadata.put("datasetName", task.getDataset().getName());
-                metadata.put("datasetClasses", task.getDataset().getClasses());
-                metadata.put("isNewAssignment", false);
-                dto.setMetadata(metadata);
+        public List<BatchItemResultDto> submitAnnotations(BatchSubmissionDto batch) {
+                if (batch.getAnnotatorId() == null) {
+                        throw new IllegalArgumentException("Annotator id is required");
+                }
+                List<BatchSubmissionDto.Item> items = batch.getItems() != null ? batch.getItems() : List.of();
+                if (items.size() > MAX_BATCH_SIZE) {
+                        throw new IllegalArgumentException("Batch larger than " + MAX_BATCH_SIZE + " items");
+                }
+                return annotationService.submitBatch(batch.getAnnotatorId(), items);
+        }
 
-                return dto;
+        // Highest-priority unlabeled task of the annotator (see TaskQueueService), optionally in one dataset
+        @Transactional(readOnly = true)
+        public Optional<TaskDto> getNextTask(Long annotatorId, Long datasetId) {
+                return taskQueueService.nextTask(annotatorId, datasetId).map(this::getTask);
         }
 
         @Transactional(readOnly = true)
@@ -227,15 +393,14 @@ public class TaskService {
                 TaskDto dto = new TaskDto();
                 dto.setId(task.getId());
                 dto.setDatasetId(task.getDataset().getId());
-                dto.setText1(task.getText1());
-                dto.setText2(task.getText2());
+                setTexts(dto, taskTextService.findTexts(List.of(taskId)).get(taskId));
 
                 List<Long> annotatorIds = task.getAnnotators().stream()
                                 .map(User::getId)
                                 .collect(Collectors.toList());
                 dto.setAnnotatorIds(annotatorIds);
 
-                dto.setAnnotations(task.getAnnotations());
+                dto.setAnnotations(annotationService.getLabelsByTask(List.of(task)).get(task.getId()));
 
                 Map<Long, Boolean> completionStatus = new HashMap<>();
                 task.getCompletionStatus().forEach((user, status) -> completionStatus.put(user.getId(), status));
@@ -254,20 +419,21 @@ public class TaskService {
         @Transactional(readOnly = true)
         public List<TaskDto> getTasksWithFewerThanThreeAnnotators() {
                 List<Task> tasks = taskRepo.findTasksWithFewerThanThreeAnnotators();
+                Map<Long, List<String>> labels = annotationService.getLabelsByTask(tasks);
+                Map<Long, TextPairDto> texts = findTexts(tasks);
 
                 return tasks.stream().map(task -> {
                         TaskDto dto = new TaskDto();
                         dto.setId(task.getId());
                         dto.setDatasetId(task.getDataset().getId());
-                        dto.setText1(task.getText1());
-                        dto.setText2(task.getText2());
+                        setTexts(dto, texts.get(task.getId()));
 
                         List<Long> annotatorIds = task.getAnnotators().stream()
                                         .map(User::getId)
                                         .collect(Collectors.toList());
                         dto.setAnnotatorIds(annotatorIds);
 
-                        dto.setAnnotations(task.getAnnotations());
+                        dto.setAnnotations(labels.get(task.getId()));
 
                         Map<Long, Boolean> completionStatus = new HashMap<>();
                         task.getCompletionStatus()
@@ -285,20 +451,34 @@ public class TaskService {
                 User annotator = userRepo.findById(annotatorId)
                                 .orElseThrow(() -> new IllegalArgumentException("Annotator not found"));
 
+                boolean added = !task.getAnnotators().contains(annotator);
                 task.addAnnotator(annotator);
                 task = taskRepo.save(task);
+                if (added) {
+                        changeLog.record(annotatorId, task.getDataset().getId(), AnnotatorChangeType.ASSIGNED,
+                                        List.of(taskId));
+                }
+                eventPublisher.publishEvent(new TaskAssignmentsChangedEvent(task.getDataset().getId()));
 
                 return getTask(taskId);
         }
 
+        private Map<Long, TextPairDto> findTexts(List<Task> tasks) {
+                return taskTextService.findTexts(tasks.stream().map(Task::getId).collect(Collectors.toList()));
+        }
+
+        private static void setTexts(TaskDto dto, TextPairDto text) {
+                if (text != null) {
+                        dto.setText1(text.getText1());
+                        dto.setText2(text.getText2());
+                }
+        }
+
         public Long getTaskCount() {
                 return taskRepo.count();
         }
 
         public Long getCompletedTaskCount() {
-                List<Task> allTasks = taskRepo.findAll();
-                return allTasks.stream()
-                                .filter(Task::isCompleted)
-                                .count();
+                return taskRepo.countCompletedTasks();
         }
 }
\ No newline at end of file
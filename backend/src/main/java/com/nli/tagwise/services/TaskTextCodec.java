@@ -0,0 +1,67 @@
+package com.nli.tagwise.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+// Optional compression of long task texts. A compressed value is the marker followed by
+// the Base64 of the deflated UTF-8 bytes, so it still fits a text column; values without
+// the marker are plain text, which lets compressed and plain rows coexist.
+@Component
+public class TaskTextCodec {
+    private static final String MARKER = "\u0001z";
+
+    private final int compressOver;
+
+    public TaskTextCodec(@Value("${tagwise.tasks.compress-texts-over:0}") int compressOver) {
+        this.compressOver = compressOver;
+    }
+
+    public String encode(String text) {
+        if (text == null || compressOver <= 0 || text.length() <= compressOver) {
+            return text;
+        }
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        deflater.setInput(input);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2);
+        byte[] buffer = new byte[8192];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        String encoded = MARKER + Base64.getEncoder().encodeToString(out.toByteArray());
+        // Not worth it for texts that do not compress
+        return encoded.length() < text.length() ? encoded : text;
+    }
+
+    public static String decode(String stored) {
+        if (stored == null || !stored.startsWith(MARKER)) {
+            return stored;
+        }
+        byte[] input = Base64.getDecoder().decode(stored.substring(MARKER.length()));
+        Inflater inflater = new Inflater();
+        inflater.setInput(input);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+        byte[] buffer = new byte[8192];
+        try {
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && inflater.needsInput()) break;
+                out.write(buffer, 0, read);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted compressed task text", e);
+        } finally {
+            inflater.end();
+        }
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
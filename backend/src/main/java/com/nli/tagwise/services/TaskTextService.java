@@ -0,0 +1,99 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.TextPairDto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.util.*;
+
+// Reads and writes the task_text side table; callers never load texts through the Task entity
+@Service
+public class TaskTextService {
+    private static final int IN_CHUNK = 1000;
+    private static final int WRITE_BATCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TaskTextCodec codec;
+
+    public TaskTextService(JdbcTemplate jdbcTemplate, TaskTextCodec codec) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.codec = codec;
+    }
+
+    // Texts of already inserted tasks, one JDBC batch per WRITE_BATCH rows
+    @Transactional
+    public void saveTexts(List<TextPairDto> texts) {
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO task_text (task_id, text1, text2) VALUES (?, ?, ?)",
+                texts, WRITE_BATCH, (ps, text) -> {
+                    ps.setLong(1, text.getId());
+                    ps.setString(2, codec.encode(text.getText1()));
+                    ps.setString(3, codec.encode(text.getText2()));
+                });
+    }
+
+    /**
+     * @return Decoded texts keyed by task id; tasks without a text row are absent
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, TextPairDto> findTexts(Collection<Long> taskIds) {
+        Map<Long, TextPairDto> texts = new HashMap<>();
+        List<Long> ids = new ArrayList<>(new LinkedHashSet<>(taskIds));
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            jdbcTemplate.query(
+                    "SELECT task_id, text1, text2 FROM task_text WHERE task_id IN (" +
+                            String.join(",", Collections.nCopies(chunk.size(), "?")) + ")",
+                    (ResultSet rs) -> {
+                        long id = rs.getLong(1);
+                        texts.put(id, new TextPairDto(id, TaskTextCodec.decode(rs.getString(2)),
+                                TaskTextCodec.decode(rs.getString(3))));
+                    },
+                    chunk.toArray());
+        }
+        return texts;
+    }
+
+    /**
+     * Copies texts still stored in the task table into task_text. The old columns are kept,
+     * so instances that still read them keep working and the split can be rolled back;
+     * they are only removed by {@link #dropTaskColumns}.
+     *
+     * @return The number of copied tasks
+     */
+    @Transactional
+    public int migrateTaskColumns() {
+        // Installations created after the split have no text columns on task
+        if (!hasTaskColumns()) {
+            return 0;
+        }
+        return jdbcTemplate.update(
+                "INSERT INTO task_text (task_id, text1, text2) SELECT t.id, t.text1, t.text2 FROM task t " +
+                        "WHERE NOT EXISTS (SELECT 1 FROM task_text tt WHERE tt.task_id = t.id)");
+    }
+
+    /**
+     * Copies the texts left behind, then drops text1 and text2 from the task table.
+     * Irreversible, only run once no instance reads the old columns any more.
+     *
+     * @return The number of tasks copied before the drop
+     */
+    @Transactional
+    public int dropTaskColumns() {
+        int moved = migrateTaskColumns();
+        if (hasTaskColumns()) {
+            jdbcTemplate.execute("ALTER TABLE task DROP COLUMN text1, DROP COLUMN text2");
+        }
+        return moved;
+    }
+
+    private boolean hasTaskColumns() {
+        Integer columns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() " +
+                        "AND TABLE_NAME = 'task' AND COLUMN_NAME IN ('text1', 'text2')",
+                Integer.class);
+        return columns != null && columns == 2;
+    }
+}
@@ -0,0 +1,150 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.repository.IUserRepo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Ids of users whose tokens must no longer be accepted (disabled or deleted accounts).
+// The JWT filter trusts the token claims instead of loading the user, so this set is what
+// stops a disabled user before the token expires. It is kept in a Redis set shared by all
+// instances and mirrored locally. At a fixed interval the mirror is rebuilt from the database,
+// the source of truth, and Redis is brought back in line with it: ids Redis lost (restart,
+// flush, eviction or a failed write) are published again, so an empty Redis set never lets a
+// revoked token back in.
+@Service
+public class TokenRevocationService {
+    private static final String KEY = "auth:revoked-users";
+
+    private final StringRedisTemplate redisTemplate;
+    private final IUserRepo userRepo;
+    private final Duration refreshInterval;
+
+    // Replaced on every change, read without locking by the filter
+    private volatile Set<Long> revoked = Set.of();
+    private ScheduledExecutorService refresher;
+
+    public TokenRevocationService(
+            StringRedisTemplate redisTemplate,
+            IUserRepo userRepo,
+            @Value("${tagwise.auth.revocation-refresh:10s}") Duration refreshInterval) {
+        this.redisTemplate = redisTemplate;
+        this.userRepo = userRepo;
+        this.refreshInterval = refreshInterval;
+    }
+
+    @PostConstruct
+    void open() {
+        // The database stays the source of truth, Redis only spreads changes between instances
+        List<Long> ids = userRepo.findRevokedIds();
+        revoked = Set.copyOf(ids);
+        if (!ids.isEmpty()) {
+            try {
+                redisTemplate.opsForSet().add(KEY, ids.stream().map(String::valueOf).toArray(String[]::new));
+            } catch (RuntimeException e) {
+                System.err.println("Could not publish revoked users: " + e.getMessage());
+            }
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "token-revocation-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMs = refreshInterval.toMillis();
+        refresher.scheduleWithFixedDelay(this::refresh, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public boolean isRevoked(Long userId) {
+        return userId != null && revoked.contains(userId);
+    }
+
+    public synchronized void revoke(Long userId) {
+        try {
+            redisTemplate.opsForSet().add(KEY, String.valueOf(userId));
+        } catch (RuntimeException e) {
+            System.err.println("Could not publish revoked user " + userId + ": " + e.getMessage());
+        }
+        Set<Long> next = new HashSet<>(revoked);
+        next.add(userId);
+        revoked = Set.copyOf(next);
+    }
+
+    public synchronized void restore(Long userId) {
+        if (!revoked.contains(userId)) return;
+        try {
+            redisTemplate.opsForSet().remove(KEY, String.valueOf(userId));
+        } catch (RuntimeException e) {
+            System.err.println("Could not publish restored user " + userId + ": " + e.getMessage());
+        }
+        Set<Long> next = new HashSet<>(revoked);
+        next.remove(userId);
+        revoked = Set.copyOf(next);
+    }
+
+    // Held under the same lock as revoke/restore so a stale read cannot undo a local change.
+    // Redis is read before the database: revoke and restore save the user before writing to
+    // Redis, so a member the later database read does not list was restored meanwhile.
+    synchronized void refresh() {
+        Set<Long> published = null;
+        try {
+            Set<String> members = redisTemplate.opsForSet().members(KEY);
+            published = new HashSet<>();
+            if (members != null) {
+                for (String member : members) {
+                    published.add(Long.valueOf(member));
+                }
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not read revoked users from Redis: " + e.getMessage());
+        }
+        Set<Long> fromDatabase;
+        try {
+            fromDatabase = new HashSet<>(userRepo.findRevokedIds());
+        } catch (RuntimeException e) {
+            // Without the database nothing is dropped, Redis can only add revocations
+            System.err.println("Could not read revoked users: " + e.getMessage());
+            Set<Long> next = new HashSet<>(revoked);
+            if (published != null) {
+                next.addAll(published);
+            }
+            revoked = Set.copyOf(next);
+            return;
+        }
+        revoked = Set.copyOf(fromDatabase);
+        if (published == null) return;
+
+        // Brings Redis back in line for the instances that have not refreshed yet
+        Set<Long> missing = new HashSet<>(fromDatabase);
+        missing.removeAll(published);
+        Set<Long> restored = new HashSet<>(published);
+        restored.removeAll(fromDatabase);
+        try {
+            if (!missing.isEmpty()) {
+                redisTemplate.opsForSet().add(KEY, missing.stream().map(String::valueOf).toArray(String[]::new));
+            }
+            if (!restored.isEmpty()) {
+                redisTemplate.opsForSet().remove(KEY, restored.stream().map(String::valueOf).toArray());
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Could not republish revoked users: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+}
@@ -1,26 +1,108 @@
 package com.nli.tagwise.services;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.nli.tagwise.models.User;
 import com.nli.tagwise.models.UserDetailsImpl;
 import com.nli.tagwise.repository.IUserRepo;
 
+import jakarta.annotation.PostConstruct;
+
+// Principals are cached by email, with an id -> email index so that a change to a user can
+// evict its entry. Evictions are broadcast on a Redis channel so every instance drops its copy.
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
+    private static final String CHANNEL = "auth:user-invalidated";
+
+    private final IUserRepo userRepo;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final Cache<String, UserDetailsImpl> byEmail;
+    private final Cache<Long, String> emailById;
+    // Bumped before every eviction. A load only knows the user id once it has read the row,
+    // so it compares this counter, not a per-user one, to detect an eviction during its read.
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserDetailsServiceImpl(
+            IUserRepo userRepo,
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer,
+            @Value("${tagwise.auth.principal-cache.max-size:10000}") long maxSize,
+            @Value("${tagwise.auth.principal-cache.ttl:5m}") Duration ttl) {
+        this.userRepo = userRepo;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.byEmail = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+        this.emailById = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+    }
 
-    @Autowired
-    private IUserRepo userRepo;
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            try {
+                evictLocal(Long.valueOf(new String(message.getBody())));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid user invalidation message");
+            }
+        }, new ChannelTopic(CHANNEL));
+    }
 
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
+        // Emails compare case-insensitively in the database, so every spelling shares one entry
+        // and the id index always points at it
+        String key = email.toLowerCase(Locale.ROOT);
+        UserDetailsImpl cached = byEmail.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = evictions.get();
         User user = userRepo.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        return new UserDetailsImpl(user);
+        UserDetailsImpl userDetails = new UserDetailsImpl(user);
+        emailById.put(user.getId(), key);
+        byEmail.put(key, userDetails);
+        // An eviction since the read may have run before the put and left this copy stale.
+        // One after this check bumps the counter first and then removes the entry itself.
+        if (evictions.get() != generation) {
+            byEmail.asMap().remove(key, userDetails);
+        }
+        return userDetails;
+    }
+
+    // To call after any change to a user, on this instance and through Redis on the others
+    public void evict(Long userId) {
+        evictLocal(userId);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, String.valueOf(userId));
+        } catch (RuntimeException e) {
+            System.err.println("Could not broadcast invalidation of user " + userId + ": " + e.getMessage());
+        }
+    }
+
+    private void evictLocal(Long userId) {
+        evictions.incrementAndGet();
+        String email = emailById.getIfPresent(userId);
+        emailById.invalidate(userId);
+        if (email != null) {
+            byEmail.invalidate(email);
+        } else {
+            // The index entry was evicted on its own, look the principal up by value
+            byEmail.asMap().values().removeIf(details -> userId.equals(details.getUser().getId()));
+        }
     }
 
 }
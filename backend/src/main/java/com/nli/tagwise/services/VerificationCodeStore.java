@@ -0,0 +1,25 @@
+package com.nli.tagwise.services;
+
+import java.time.Duration;
+
+// Storage of account verification codes, one pending code per user
+public interface VerificationCodeStore {
+
+    enum Result {
+        // No code for the user, or it expired
+        MISSING,
+        // A code exists but differs, it stays valid
+        MISMATCH,
+        // The code matched and has been removed
+        CONSUMED
+    }
+
+    void save(Long userId, String code, Duration ttl);
+
+    String find(Long userId);
+
+    // Compares and removes in one atomic step, so a code can only be used once
+    Result consume(Long userId, String code);
+
+    void delete(Long userId);
+}
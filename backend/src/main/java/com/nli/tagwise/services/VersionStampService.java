@@ -0,0 +1,183 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.events.DatasetUploadedEvent;
+import com.nli.tagwise.events.TaskAssignmentsChangedEvent;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory version counters behind the ETags of the dataset and task read endpoints. They are
+// bumped after each committed write, so a conditional GET is answered from memory. Every tag
+// starts with an id of this process: a tag issued by another instance or before a restart
+// never matches, and bumps are broadcast on Redis so other instances stay current.
+@Service
+public class VersionStampService {
+    private static final String CHANNEL = "stamps:bumped";
+    // Changes to users shown in the read models, applies to every tag
+    private static final String GLOBAL = "global";
+    // Any change to any dataset, for the dataset list
+    private static final String DATASETS = "datasets";
+    // Any change to task assignments
+    private static final String ASSIGNMENTS = "assignments";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String instance = Long.toString(new SecureRandom().nextLong() & Long.MAX_VALUE, 36);
+    private final Map<String, AtomicLong> stamps = new ConcurrentHashMap<>();
+    // Datasets in which each annotator has tasks, dropped whenever assignments change
+    private final Map<Long, long[]> annotatorDatasets = new ConcurrentHashMap<>();
+    private final Set<String> pendingBroadcast = ConcurrentHashMap.newKeySet();
+    private final ExecutorService broadcaster = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "version-stamp-broadcast");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public VersionStampService(
+            JdbcTemplate jdbcTemplate,
+            StringRedisTemplate redisTemplate,
+            RedisMessageListenerContainer listenerContainer) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody()).split("\\|", 2);
+            // Our own bumps were already applied
+            if (parts.length == 2 && !parts[0].equals(instance)) {
+                bumpLocal(parts[1]);
+            }
+        }, new ChannelTopic(CHANNEL));
+    }
+
+    // True when an If-None-Match header lists the tag, or is "*"
+    public static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals(tag) || value.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Tag of the dataset list, whatever the page or fields
+    public String datasetListTag() {
+        return tag(stamp(DATASETS));
+    }
+
+    // Tag of the details and tasks of one dataset
+    public String datasetTag(Long datasetId) {
+        return tag(stamp("dataset:" + datasetId));
+    }
+
+    /**
+     * Tag of the tasks of an annotator. It moves with the annotator's assignments and with
+     * every change to the datasets those tasks belong to, since the task views carry the
+     * labels of the other annotators too.
+     */
+    public String annotatorTag(Long annotatorId) {
+        long assignments = stamp(ASSIGNMENTS);
+        long[] datasets = annotatorDatasets.get(annotatorId);
+        if (datasets == null) {
+            datasets = jdbcTemplate.queryForList(
+                    "SELECT DISTINCT t.dataset_id FROM task_annotator ta JOIN task t ON t.id = ta.task_id " +
+                            "WHERE ta.annotator_id = ?", Long.class, annotatorId)
+                    .stream().mapToLong(Long::longValue).toArray();
+            // Not kept if assignments changed while reading, it may already be outdated
+            if (stamp(ASSIGNMENTS) == assignments) {
+                annotatorDatasets.put(annotatorId, datasets);
+            }
+        }
+        // Counters only grow, so the sum moves whenever one of them does
+        long sum = 0;
+        for (long datasetId : datasets) {
+            sum += stamp("dataset:" + datasetId);
+        }
+        return tag(assignments + "." + sum);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDatasetUploaded(DatasetUploadedEvent event) {
+        bump(DATASETS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAssignmentsChanged(TaskAssignmentsChangedEvent event) {
+        bump("dataset:" + event.getDatasetId());
+        bump(DATASETS);
+        bump(ASSIGNMENTS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnnotationSubmitted(AnnotationSubmittedEvent event) {
+        bump("dataset:" + event.getDatasetId());
+        bump(DATASETS);
+    }
+
+    // For changes that are not dataset events, such as an annotator's name
+    public void bumpAll() {
+        bump(GLOBAL);
+    }
+
+    private void bump(String key) {
+        bumpLocal(key);
+        // Broadcast in the background, one message for all bumps of a key made meanwhile
+        if (pendingBroadcast.add(key)) {
+            broadcaster.execute(() -> {
+                pendingBroadcast.remove(key);
+                try {
+                    redisTemplate.convertAndSend(CHANNEL, instance + "|" + key);
+                } catch (RuntimeException e) {
+                    System.err.println("Could not broadcast version bump of " + key + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    private void bumpLocal(String key) {
+        stamps.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+        if (key.equals(ASSIGNMENTS)) {
+            annotatorDatasets.clear();
+        }
+    }
+
+    private long stamp(String key) {
+        AtomicLong stamp = stamps.get(key);
+        return stamp != null ? stamp.get() : 0;
+    }
+
+    private String tag(Object version) {
+        return "\"" + instance + "-" + stamp(GLOBAL) + "-" + version + "\"";
+    }
+
+    @PreDestroy
+    void close() {
+        broadcaster.shutdownNow();
+    }
+}
@@ -0,0 +1,154 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.AgreementDto;
+import com.nli.tagwise.dto.PairAgreementDto;
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AgreementServiceTest {
+    private static final double EPSILON = 1e-9;
+
+    // Task, annotator, label. Three labels, three annotators on four tasks:
+    // Fleiss 5/11, Krippendorff 0.5, Cohen 1.0 for (1, 2) and 0.2 for (1, 3) and (2, 3)
+    private static final long[][] RATINGS = {
+            { 1, 1, 0 }, { 1, 2, 0 }, { 1, 3, 0 },
+            { 2, 1, 0 }, { 2, 2, 0 }, { 2, 3, 1 },
+            { 3, 1, 1 }, { 3, 2, 1 }, { 3, 3, 1 },
+            { 4, 1, 2 }, { 4, 2, 2 }, { 4, 3, 0 },
+    };
+
+    private AgreementService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void incrementalAgreementMatchesHandComputedValues() {
+        service = service(new long[0][]);
+        assertEquals(0, service.getAgreement(1L).getItems());
+
+        for (long[] rating : RATINGS) {
+            submit(rating[0], rating[1], rating[2]);
+        }
+        assertHandComputed(service.getAgreement(1L));
+    }
+
+    // A re-submission must take the annotator's previous label out of every coefficient
+    @Test
+    void resubmissionReplacesPreviousLabel() {
+        service = service(new long[0][]);
+        service.getAgreement(1L);
+
+        for (long[] rating : RATINGS) {
+            boolean replaced = rating[0] == 2 && rating[1] == 3;
+            submit(rating[0], rating[1], replaced ? 2 : rating[2]);
+        }
+        assertNotEquals(5.0 / 11, service.getAgreement(1L).getFleissKappa(), EPSILON);
+
+        submit(2, 3, 1);
+        assertHandComputed(service.getAgreement(1L));
+    }
+
+    // Slices read in parallel and merged give the same state as labels applied one by one
+    @Test
+    void recomputeFromSlicesMatchesHandComputedValues() {
+        service = service(RATINGS);
+        assertHandComputed(service.recomputeAgreement(1L));
+    }
+
+    @Test
+    void undefinedCoefficientsAreNull() {
+        service = service(new long[][] { { 1, 1, 0 }, { 1, 2, 0 }, { 2, 1, 0 }, { 2, 2, 0 } });
+        AgreementDto agreement = service.getAgreement(1L);
+
+        assertEquals(2, agreement.getItems());
+        assertNull(agreement.getFleissKappa());
+        assertNull(agreement.getKrippendorffAlpha());
+    }
+
+    private void submit(long taskId, long annotatorId, long code) {
+        service.onAnnotationSubmitted(new AnnotationSubmittedEvent(1L, taskId, annotatorId, (short) code));
+    }
+
+    private static void assertHandComputed(AgreementDto agreement) {
+        assertEquals(4, agreement.getItems());
+        assertEquals(12, agreement.getRatings());
+        assertEquals(5.0 / 11, agreement.getFleissKappa(), EPSILON);
+        assertEquals(0.5, agreement.getKrippendorffAlpha(), EPSILON);
+        assertEquals(1.4 / 3, agreement.getMeanCohenKappa(), EPSILON);
+
+        assertEquals(3, agreement.getPairs().size());
+        assertEquals(1.0, pair(agreement, 1, 2).getCohenKappa(), EPSILON);
+        assertEquals(0.2, pair(agreement, 1, 3).getCohenKappa(), EPSILON);
+        assertEquals(0.2, pair(agreement, 2, 3).getCohenKappa(), EPSILON);
+        assertEquals(4, pair(agreement, 1, 3).getSharedTasks());
+    }
+
+    private static PairAgreementDto pair(AgreementDto agreement, long annotatorId, long otherAnnotatorId) {
+        return agreement.getPairs().stream()
+                .filter(p -> p.getAnnotatorId() == annotatorId && p.getOtherAnnotatorId() == otherAnnotatorId)
+                .findFirst()
+                .orElseThrow();
+    }
+
+    // Serves the given annotation rows to the slice queries, filtered by their task range
+    private static AgreementService service(long[][] rows) {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        Map<String, Object> bounds = new HashMap<>();
+        bounds.put("lo", Arrays.stream(rows).mapToLong(r -> r[0]).min().stream().boxed().findFirst().orElse(null));
+        bounds.put("hi", Arrays.stream(rows).mapToLong(r -> r[0]).max().stream().boxed().findFirst().orElse(null));
+        when(jdbcTemplate.queryForMap(anyString(), any(Object[].class))).thenReturn(bounds);
+
+        doAnswer(invocation -> {
+            long[] range = new long[3];
+            PreparedStatement ps = mock(PreparedStatement.class);
+            doAnswer(set -> {
+                range[(int) set.getArgument(0) - 1] = set.getArgument(1);
+                return null;
+            }).when(ps).setLong(anyInt(), anyLong());
+            Connection con = mock(Connection.class);
+            when(con.prepareStatement(anyString())).thenReturn(ps);
+            invocation.<PreparedStatementCreator>getArgument(0).createPreparedStatement(con);
+
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long[] row : rows) {
+                if (row[0] >= range[1] && row[0] <= range[2]) {
+                    handler.processRow(row(row));
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        Dataset dataset = new Dataset();
+        dataset.setClasses("entailment;neutral;contradiction");
+        IDatasetRepo datasetRepo = mock(IDatasetRepo.class);
+        when(datasetRepo.findById(1L)).thenReturn(Optional.of(dataset));
+
+        return new AgreementService(jdbcTemplate, datasetRepo, 2);
+    }
+
+    private static ResultSet row(long[] row) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(row[0]);
+        when(rs.getLong(2)).thenReturn(row[1]);
+        when(rs.getShort(3)).thenReturn((short) row[2]);
+        return rs;
+    }
+}
@@ -0,0 +1,174 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.ConsensusResultDto;
+import com.nli.tagwise.dto.LabelCountDto;
+import com.nli.tagwise.models.ConsensusMethod;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ConsensusServiceTest {
+    private static final double EPSILON = 1e-9;
+
+    private final List<long[]> rows = new ArrayList<>();
+    // Task id -> stored label code and confidence
+    private final Map<Long, double[]> stored = new HashMap<>();
+    private ConsensusService service;
+
+    @AfterEach
+    void shutdown() {
+        if (service != null) service.shutdown();
+    }
+
+    @Test
+    void majorityVotesWithTiesToLowestCode() {
+        rate(10, 0, 0, 1);
+        rate(11, 1, 2, 2);
+        rate(12, 0, 1, 2);
+        rate(13, 2, 2); // Below the redundancy target
+        service = service();
+
+        ConsensusResultDto result = service.computeConsensus(1L, ConsensusMethod.MAJORITY);
+
+        assertEquals(3, result.getTasks());
+        assertEquals(9, result.getRatings());
+        assertLabel(10, 0, 2.0 / 3);
+        assertLabel(11, 2, 2.0 / 3);
+        assertLabel(12, 0, 1.0 / 3);
+        assertFalse(stored.containsKey(13L));
+        assertEquals(List.of(2L, 0L, 1L),
+                result.getLabelCounts().stream().map(LabelCountDto::getCount).toList());
+
+        // Annotators 1, 2 and 3 gave the first, second and third label of each task
+        assertEquals(2.0 / 3, result.getAnnotatorAccuracy().get(1L), EPSILON);
+        assertEquals(2.0 / 3, result.getAnnotatorAccuracy().get(2L), EPSILON);
+        assertEquals(1.0 / 3, result.getAnnotatorAccuracy().get(3L), EPSILON);
+    }
+
+    // Annotators 3 and 4 answer the first label whatever the task: majority vote splits
+    // evenly and picks it, Dawid-Skene learns they carry no information and follows 1 and 2
+    @Test
+    void dawidSkeneDiscountsUninformativeAnnotators() {
+        for (long task = 1; task <= 6; task++) rate(task, 0, 0, 0, 0);
+        for (long task = 7; task <= 12; task++) rate(task, 1, 1, 0, 0);
+        for (long task = 13; task <= 16; task++) rate(task, 2, 2, 0, 0);
+        service = service();
+
+        service.computeConsensus(1L, ConsensusMethod.MAJORITY);
+        assertLabel(7, 0, 0.5);
+        assertLabel(13, 0, 0.5);
+
+        ConsensusResultDto result = service.computeConsensus(1L, ConsensusMethod.DAWID_SKENE);
+
+        assertEquals(16, result.getTasks());
+        assertTrue(result.getIterations() >= 1);
+        for (long task = 1; task <= 16; task++) {
+            long expected = task <= 6 ? 0 : task <= 12 ? 1 : 2;
+            assertEquals(expected, (long) stored.get(task)[0], "task " + task);
+            assertTrue(stored.get(task)[1] > 0.9, "task " + task);
+        }
+        assertEquals(List.of(6L, 6L, 4L),
+                result.getLabelCounts().stream().map(LabelCountDto::getCount).toList());
+
+        Map<Long, Double> accuracy = result.getAnnotatorAccuracy();
+        assertTrue(accuracy.get(1L) > 0.95);
+        assertTrue(accuracy.get(2L) > 0.95);
+        assertEquals(6.0 / 16, accuracy.get(3L), 0.05);
+        assertEquals(6.0 / 16, accuracy.get(4L), 0.05);
+    }
+
+    @Test
+    void unanimousRatingsAgreeAcrossMethods() {
+        rate(1, 0, 0, 0);
+        rate(2, 1, 1, 1);
+        rate(3, 2, 2, 2);
+        service = service();
+
+        for (ConsensusMethod method : ConsensusMethod.values()) {
+            stored.clear();
+            ConsensusResultDto result = service.computeConsensus(1L, method);
+            assertEquals(3, result.getTasks());
+            for (long task = 1; task <= 3; task++) {
+                assertEquals(task - 1, (long) stored.get(task)[0], method + " task " + task);
+            }
+        }
+    }
+
+    // Labels of one task by annotators 1, 2, 3...
+    private void rate(long taskId, long... codes) {
+        for (int i = 0; i < codes.length; i++) {
+            rows.add(new long[] { taskId, i + 1, codes[i] });
+        }
+    }
+
+    private void assertLabel(long taskId, long code, double confidence) {
+        assertEquals(code, (long) stored.get(taskId)[0], "task " + taskId);
+        assertEquals(confidence, stored.get(taskId)[1], EPSILON, "task " + taskId);
+    }
+
+    // Answers the keyset reads from rows and records the consensus rows written
+    @SuppressWarnings("unchecked")
+    private ConsensusService service() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long afterTask = invocation.getArgument(3);
+            long afterAnnotator = invocation.getArgument(5);
+            int limit = invocation.getArgument(6);
+            rows.stream()
+                    .filter(r -> r[0] > afterTask || (r[0] == afterTask && r[1] > afterAnnotator))
+                    .sorted(Comparator.<long[]>comparingLong(r -> r[0]).thenComparingLong(r -> r[1]))
+                    .limit(limit)
+                    .forEach(r -> {
+                        try {
+                            handler.processRow(row(r));
+                        } catch (Exception e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        doAnswer(invocation -> {
+            ParameterizedPreparedStatementSetter<Integer> setter = invocation.getArgument(3);
+            for (Integer i : (Collection<Integer>) invocation.getArgument(1)) {
+                double[] values = new double[3];
+                PreparedStatement ps = mock(PreparedStatement.class);
+                doAnswer(set -> values[0] = set.<Long>getArgument(1)).when(ps).setLong(eq(1), anyLong());
+                doAnswer(set -> values[1] = set.<Short>getArgument(1)).when(ps).setShort(eq(3), anyShort());
+                doAnswer(set -> values[2] = set.<Double>getArgument(1)).when(ps).setDouble(eq(4), anyDouble());
+                setter.setValues(ps, i);
+                stored.put((long) values[0], new double[] { values[1], values[2] });
+            }
+            return null;
+        }).when(jdbcTemplate).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        Dataset dataset = new Dataset();
+        dataset.setClasses("entailment;neutral;contradiction");
+        IDatasetRepo datasetRepo = mock(IDatasetRepo.class);
+        when(datasetRepo.findById(1L)).thenReturn(Optional.of(dataset));
+
+        return new ConsensusService(jdbcTemplate, datasetRepo, 3, 2);
+    }
+
+    private static ResultSet row(long[] row) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(row[0]);
+        when(rs.getLong(2)).thenReturn(row[1]);
+        when(rs.getShort(3)).thenReturn((short) row[2]);
+        return rs;
+    }
+}
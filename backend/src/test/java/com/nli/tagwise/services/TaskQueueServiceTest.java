@@ -0,0 +1,172 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.events.AnnotationSubmittedEvent;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TaskQueueServiceTest {
+    private static final int LABELS = 3;
+    private static final int REDUNDANCY = 3;
+
+    private final List<long[]> assignments = new ArrayList<>();
+    private final List<long[]> annotations = new ArrayList<>();
+
+    @Test
+    void contestedTasksComeFirstThenFewestMissingThenId() {
+        assign(9, 1, 2, 3, 4);
+        label(2, 7, 0);
+        label(2, 8, 1); // Split 50/50, one label missing
+        label(3, 7, 0); // Two missing
+        label(4, 6, 0);
+        label(4, 7, 0);
+        label(4, 8, 0); // Complete, served last
+        TaskQueueService service = service();
+
+        assertEquals(Optional.of(2L), service.nextTask(9L, 1L));
+        submit(service, 2, 9, 0);
+        assertEquals(Optional.of(3L), service.nextTask(9L, 1L));
+        submit(service, 3, 9, 0);
+        assertEquals(Optional.of(1L), service.nextTask(9L, 1L));
+        submit(service, 1, 9, 0);
+        assertEquals(Optional.of(4L), service.nextTask(9L, 1L));
+        submit(service, 4, 9, 0);
+        assertEquals(Optional.empty(), service.nextTask(9L, 1L));
+    }
+
+    // Another annotator's label moves the task within the heaps of its assignees
+    @Test
+    void labelsOfOthersReorderTheQueue() {
+        assign(9, 1, 2);
+        assign(8, 1);
+        label(2, 7, 0);
+        TaskQueueService service = service();
+
+        assertEquals(Optional.of(2L), service.nextTask(9L, 1L));
+        submit(service, 1, 8, 0);
+        assertEquals(Optional.of(1L), service.nextTask(9L, 1L));
+        submit(service, 1, 7, 1);
+        assertEquals(Optional.of(1L), service.nextTask(9L, 1L));
+        submit(service, 1, 6, 1); // Complete now
+        assertEquals(Optional.of(2L), service.nextTask(9L, 1L));
+    }
+
+    // Re-submissions by an annotator who is not assigned must not count as extra labels
+    @Test
+    void resubmissionReplacesPreviousLabel() {
+        assign(9, 5, 6);
+        label(6, 7, 0);
+        TaskQueueService service = service();
+
+        assertEquals(Optional.of(6L), service.nextTask(9L, 1L));
+        submit(service, 5, 6, 0);
+        submit(service, 5, 6, 1);
+        submit(service, 5, 6, 2);
+        assertEquals(Optional.of(5L), service.nextTask(9L, 1L));
+    }
+
+    // The heap head must always be the best task by the same ordering computed from scratch
+    @Test
+    void headMatchesFullSortAfterRandomSubmissions() {
+        Random random = new Random(7);
+        int tasks = 200;
+        long[] annotators = { 1, 2, 3, 4, 5 };
+        Map<Long, Set<Long>> assignees = new HashMap<>();
+        for (long task = 1; task <= tasks; task++) {
+            for (long annotator : annotators) {
+                if (random.nextInt(2) == 0) {
+                    assign(annotator, task);
+                    assignees.computeIfAbsent(task, t -> new HashSet<>()).add(annotator);
+                }
+            }
+        }
+        Map<Long, Map<Long, Integer>> labels = new HashMap<>();
+        TaskQueueService service = service();
+        service.nextTask(1L, 1L);
+
+        for (int step = 0; step < 2000; step++) {
+            long task = 1 + random.nextInt(tasks);
+            long annotator = 1 + random.nextInt(8);
+            int code = random.nextInt(LABELS);
+            submit(service, task, annotator, code);
+            if (assignees.containsKey(task)) {
+                labels.computeIfAbsent(task, t -> new HashMap<>()).put(annotator, code);
+            }
+
+            for (long candidate : annotators) {
+                Optional<Long> expected = assignees.keySet().stream()
+                        .filter(t -> assignees.get(t).contains(candidate)
+                                && !labels.getOrDefault(t, Map.of()).containsKey(candidate))
+                        .min(Comparator.<Long, Boolean>comparing(t -> remaining(labels.get(t)) == 0)
+                                .thenComparingDouble(t -> majorityShare(labels.get(t)))
+                                .thenComparingInt(t -> remaining(labels.get(t)))
+                                .thenComparingLong(t -> t));
+                assertEquals(expected, service.nextTask(candidate, 1L), "step " + step);
+            }
+        }
+    }
+
+    private static int remaining(Map<Long, Integer> labels) {
+        return Math.max(0, REDUNDANCY - (labels == null ? 0 : labels.size()));
+    }
+
+    private static double majorityShare(Map<Long, Integer> labels) {
+        if (labels == null || labels.size() < 2) return 1;
+        int[] votes = new int[LABELS];
+        labels.values().forEach(code -> votes[code]++);
+        return (double) Arrays.stream(votes).max().getAsInt() / labels.size();
+    }
+
+    private void assign(long annotatorId, long... taskIds) {
+        for (long taskId : taskIds) {
+            assignments.add(new long[] { taskId, annotatorId });
+        }
+    }
+
+    private void label(long taskId, long annotatorId, long code) {
+        annotations.add(new long[] { taskId, annotatorId, code });
+    }
+
+    private static void submit(TaskQueueService service, long taskId, long annotatorId, long code) {
+        service.onAnnotationSubmitted(new AnnotationSubmittedEvent(1L, taskId, annotatorId, (short) code));
+    }
+
+    // Serves the assignment and annotation rows to the load queries
+    private TaskQueueService service() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            String sql = invocation.getArgument(0);
+            RowCallbackHandler handler = invocation.getArgument(1);
+            for (long[] r : sql.contains("task_annotator") ? assignments : annotations) {
+                handler.processRow(row(r));
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+
+        Dataset dataset = new Dataset();
+        dataset.setClasses("entailment;neutral;contradiction");
+        IDatasetRepo datasetRepo = mock(IDatasetRepo.class);
+        when(datasetRepo.findById(1L)).thenReturn(Optional.of(dataset));
+
+        return new TaskQueueService(jdbcTemplate, datasetRepo, REDUNDANCY);
+    }
+
+    private static ResultSet row(long[] row) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(row[0]);
+        when(rs.getLong(2)).thenReturn(row[1]);
+        if (row.length > 2) {
+            when(rs.getShort(3)).thenReturn((short) row[2]);
+        }
+        return rs;
+    }
+}
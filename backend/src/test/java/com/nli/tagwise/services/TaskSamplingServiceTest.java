@@ -0,0 +1,64 @@
+package com.nli.tagwise.services;
+
+import com.nli.tagwise.dto.SampleStrata;
+import com.nli.tagwise.dto.TaskSampleDto;
+import com.nli.tagwise.dto.TextPairDto;
+import com.nli.tagwise.models.Dataset;
+import com.nli.tagwise.repository.IDatasetRepo;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TaskSamplingServiceTest {
+
+    // Datasets with fewer than twice the sample size in ids used to spin forever looking for candidates
+    @Test
+    void sampleOfSmallDatasetReturnsDistinctTasks() {
+        for (int taskCount = 1; taskCount <= 19; taskCount++) {
+            for (int size : new int[] { 5, 10 }) {
+                List<Long> ids = LongStream.rangeClosed(100, 99 + taskCount).boxed().collect(Collectors.toList());
+                TaskSamplingService service = service(ids);
+
+                List<TaskSampleDto> sample = assertTimeoutPreemptively(Duration.ofSeconds(5),
+                        () -> service.sample(1L, size, SampleStrata.NONE, null, 42L));
+
+                List<Long> sampled = sample.get(0).getPairs().stream().map(TextPairDto::getId)
+                        .collect(Collectors.toList());
+                assertEquals(Math.min(size, taskCount), sampled.size());
+                assertEquals(sampled.size(), new HashSet<>(sampled).size());
+                assertTrue(ids.containsAll(sampled));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static TaskSamplingService service(List<Long> ids) {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForMap(anyString(), any(Object[].class)))
+                .thenReturn(Map.of("lo", ids.get(0), "hi", ids.get(ids.size() - 1)));
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(Object[].class)))
+                .thenAnswer(invocation -> new ArrayList<>(ids));
+
+        TaskTextService taskTextService = mock(TaskTextService.class);
+        when(taskTextService.findTexts(anyList())).thenAnswer(invocation -> {
+            Map<Long, TextPairDto> texts = new HashMap<>();
+            for (Long id : (List<Long>) invocation.getArgument(0)) {
+                texts.put(id, new TextPairDto(id, "premise " + id, "hypothesis " + id));
+            }
+            return texts;
+        });
+
+        IDatasetRepo datasetRepo = mock(IDatasetRepo.class);
+        when(datasetRepo.findById(1L)).thenReturn(Optional.of(new Dataset()));
+
+        return new TaskSamplingService(jdbcTemplate, taskTextService, datasetRepo);
+    }
+}
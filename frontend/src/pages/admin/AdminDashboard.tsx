@@ -4,7 +4,7 @@ import { useAuth } from '../../context/AuthContext';
 import AdminSidebar from '../../components/AdminSidebar';
 import { Link, useNavigate } from 'react-router-dom';
 import * as React from "react";
-import { adminApi } from '../../utils/api';
+import { adminApi, AdminStats, DashboardUpdate } from '../../utils/api';
 
 // Example types
 type Annotator = {
@@ -26,6 +26,10 @@ type Stats = {
     completedTasks: number;
 };
 
+type DatasetProgress = DashboardUpdate['datasets'][number];
+
+const STREAM_RETRY_MS = 3000;
+
 const AdminDashboard: React.FC = () => {
     const { user } = useAuth();
     const navigate = useNavigate();
@@ -41,6 +45,7 @@ const AdminDashboard: React.FC = () => {
         completedTasks: 0
     });
     const [loading, setLoading] = useState(true);
+    const [liveProgress, setLiveProgress] = useState<Map<number, DatasetProgress>>(new Map());
 
     useEffect(() => {
         // Redirect if not authenticated or not an admin
@@ -50,54 +55,59 @@ const AdminDashboard: React.FC = () => {
     }, [user, navigate]);
 
     useEffect(() => {
-        // Fetch dashboard data
-        const fetchDashboardData = async () => {
-            try {
-                setLoading(true);
-                // Fetch real data from API
-                const [annotatorCount, datasetCount, taskCount, completedTaskCount, recentDatasetsData, recentAnnotatorsData] = await Promise.all([
-                    adminApi.getAnnotatorCount(),
-                    adminApi.getDatasetCount(),
-                    adminApi.getTaskCount(),
-                    adminApi.getCompletedTaskCount(),
-                    adminApi.getRecentDatasets(),
-                    adminApi.getRecentAnnotators()
-                ]);
-
-                console.log('API Responses:', {
-                    annotatorCount,
-                    datasetCount,
-                    taskCount,
-                    completedTaskCount,
-                    recentDatasetsData,
-                    recentAnnotatorsData
-                });
-
-                // Update stats with real data
-                const newStats = {
-                    totalAnnotators: annotatorCount,
-                    totalDatasets: datasetCount,
-                    totalTasks: taskCount,
-                    completedTasks: completedTaskCount
-                };
-
-                console.log('New Stats:', newStats);
-                setStats(newStats);
-
-                // Set recent datasets from API
-                setRecentDatasets(recentDatasetsData);
-
-                // Set recent annotators from API
-                setRecentAnnotators(recentAnnotatorsData);
+        // The stream sends the dashboard snapshot first, then dataset progress as labels come in
+        const controller = new AbortController();
+        const applyStats = (dashboard: AdminStats) => {
+            setStats({
+                totalAnnotators: dashboard.totalAnnotators,
+                totalDatasets: dashboard.totalDatasets,
+                totalTasks: dashboard.totalTasks,
+                completedTasks: dashboard.completedTasks
+            });
+            setRecentDatasets(dashboard.recentDatasets);
+            setRecentAnnotators(dashboard.recentAnnotators);
+            setLoading(false);
+        };
+        const applyProgress = (update: DashboardUpdate) => {
+            setLiveProgress(previous => {
+                const next = new Map(previous);
+                update.datasets.forEach(dataset => next.set(dataset.datasetId, dataset));
+                return next;
+            });
+        };
 
-            } catch (error) {
-                console.error('Error fetching dashboard data:', error);
-            } finally {
-                setLoading(false);
+        const streamDashboardData = async () => {
+            let received = false;
+            while (!controller.signal.aborted) {
+                try {
+                    await adminApi.streamDashboard({
+                        onStats: dashboard => {
+                            received = true;
+                            applyStats(dashboard);
+                        },
+                        onProgress: applyProgress
+                    }, controller.signal);
+                } catch (error) {
+                    if (controller.signal.aborted) return;
+                    console.error('Dashboard stream failed:', error);
+                    // Still show the counters when streaming is not available
+                    if (!received) {
+                        try {
+                            applyStats(await adminApi.getStats());
+                            received = true;
+                        } catch (fallbackError) {
+                            console.error('Error fetching dashboard data:', fallbackError);
+                            setLoading(false);
+                        }
+                    }
+                }
+                // The server ends streams on timeout or when this client falls behind
+                await new Promise(resolve => setTimeout(resolve, STREAM_RETRY_MS));
             }
         };
 
-        fetchDashboardData();
+        streamDashboardData();
+        return () => controller.abort();
     }, []);
 
     const handleSearch = (e: React.FormEvent) => {
@@ -327,6 +337,29 @@ const AdminDashboard: React.FC = () => {
                             </div>
                         </div>
 
+                        {/* Live Progress */}
+                        {liveProgress.size > 0 && (
+                            <div className="bg-white/80 backdrop-blur-lg rounded-2xl shadow-xl p-6 border border-white/50 mb-8">
+                                <h2 className="text-2xl font-bold text-gray-800 mb-6">Live Progress</h2>
+                                <div className="space-y-4">
+                                    {Array.from(liveProgress.values()).map(dataset => (
+                                        <div key={dataset.datasetId}>
+                                            <div className="flex justify-between text-sm text-gray-600 mb-1">
+                                                <span className="font-medium text-gray-800">Dataset #{dataset.datasetId}</span>
+                                                <span>{dataset.completedTaskCount} / {dataset.taskCount} tasks</span>
+                                            </div>
+                                            <div className="w-full bg-gray-200 rounded-full h-2">
+                                                <div
+                                                    className="bg-teal-500 h-2 rounded-full transition-all duration-500"
+                                                    style={{ width: `${Math.min(100, dataset.completionPercentage)}%` }}
+                                                ></div>
+                                            </div>
+                                        </div>
+                                    ))}
+                                </div>
+                            </div>
+                        )}
+
                         {/* Quick Actions */}
                         <div className="bg-white/80 backdrop-blur-lg rounded-2xl shadow-xl p-6 border border-white/50">
                             <h2 className="text-2xl font-bold text-gray-800 mb-6">Quick Actions</h2>
@@ -1,3 +1,5 @@
+import { getUserId } from './jwt';
+
 // Base URLs for different API categories
 const API_BASE_URL = 'http://localhost:8080';
 const AUTH_API = `${API_BASE_URL}/api/auth`;
@@ -183,10 +185,43 @@ export type Task = {
     };
 };
 
+// Dataset metadata is sent once per dataset; tasks refer to it by datasetId
+export type WorkPackage = {
+    datasets: { id: number; name: string; labels: string[] }[];
+    tasks: {
+        id: number;
+        datasetId: number;
+        text1: string;
+        text2: string;
+        completed: boolean;
+        label: string | null;
+        newAssignment: boolean;
+    }[];
+};
+
 export const annotatorApi = {
-    getTasks: async () => {
-        const response = await authenticatedFetch(`${TASKS_API}/annotator/my-tasks`);
-        return handleResponse<Task[]>(response);
+    getWorkPackage: async () => {
+        const response = await authenticatedFetch(`${TASKS_API}/annotator/my-tasks/work-package`);
+        return handleResponse<WorkPackage>(response);
+    },
+
+    // Expands the work package into the Task shape used by the pages; dataset fields are built once per dataset
+    getTasks: async (): Promise<Task[]> => {
+        const workPackage = await annotatorApi.getWorkPackage();
+        const userId = getUserId() ?? '';
+        const datasetMetadata = new Map<number, Omit<Task['metadata'], 'isNewAssignment'>>(workPackage.datasets.map(dataset => [dataset.id, {
+            datasetName: dataset.name,
+            datasetClasses: dataset.labels.join(';'),
+        }]));
+        return workPackage.tasks.map(task => ({
+            id: String(task.id),
+            datasetId: task.datasetId,
+            text1: task.text1,
+            text2: task.text2,
+            annotations: task.label ? [task.label] : [],
+            completionStatus: { [userId]: task.completed },
+            metadata: { ...datasetMetadata.get(task.datasetId)!, isNewAssignment: task.newAssignment },
+        }));
     },
 
     getAnnotatorById: async (id: string) => {
@@ -222,11 +257,13 @@ export const annotatorApi = {
         return handleResponse<void>(response);
     },
 
-    updateTaskAnnotation: async (taskId: string, userId: string, annotation: string) => {
-        const response = await authenticatedFetch(`${TASKS_API}/${taskId}/annotate?annotatorId=${userId}&annotation=${encodeURIComponent(annotation)}`, {
+    // Reuse the same submissionId when retrying so the server applies the label once
+    updateTaskAnnotation: async (taskId: string, userId: string, annotation: string, submissionId: string = crypto.randomUUID()) => {
+        const response = await authenticatedFetch(`${TASKS_API}/${taskId}/submissions`, {
             method: 'POST',
+            body: JSON.stringify({ annotatorId: userId, label: annotation, submissionId }),
         });
-        return handleResponse<Task>(response);
+        return handleResponse<{ taskId: number; annotatorId: number; label: string; version: number; submissionId: string }>(response);
     },
 };
 
@@ -260,7 +297,73 @@ export interface Annotator {
     deleted?: boolean;
 }
 
+export type AdminStats = {
+    totalTasks: number;
+    completedTasks: number;
+    totalAnnotators: number;
+    totalDatasets: number;
+    recentDatasets: Array<{ name: string; classes: string; taskCount: number }>;
+    recentAnnotators: Array<{ name: string; email: string; completedTasks: number }>;
+    generatedAt: string;
+};
+
+export type DashboardUpdate = {
+    datasets: Array<{ datasetId: number; taskCount: number; completedTaskCount: number; completionPercentage: number }>;
+    annotators: Array<{ annotatorId: number; submissions: number; lastSubmittedAt: string }>;
+    generatedAt: string;
+};
+
+export type DashboardStreamHandlers = {
+    onStats: (stats: AdminStats) => void;
+    onProgress: (update: DashboardUpdate) => void;
+};
+
+// Reads Server-Sent Events from a fetch body. EventSource cannot send the Authorization
+// header, so the stream goes through authenticatedFetch like every other call.
+async function readEventStream(response: Response, onEvent: (name: string, data: string) => void) {
+    if (!response.ok || !response.body) {
+        throw new Error(`API error: ${response.status} ${response.statusText}`);
+    }
+    const reader = response.body.pipeThrough(new TextDecoderStream()).getReader();
+    let buffer = '';
+    while (true) {
+        const { value, done } = await reader.read();
+        if (done) return;
+        buffer += value.replace(/\r\n?/g, '\n');
+        let end: number;
+        while ((end = buffer.indexOf('\n\n')) >= 0) {
+            const block = buffer.slice(0, end);
+            buffer = buffer.slice(end + 2);
+            let name = 'message';
+            const data: string[] = [];
+            for (const line of block.split('\n')) {
+                if (line.startsWith('event:')) name = line.slice(6).trim();
+                else if (line.startsWith('data:')) data.push(line.slice(5).replace(/^ /, ''));
+            }
+            // Comment-only blocks are heartbeats
+            if (data.length > 0) onEvent(name, data.join('\n'));
+        }
+    }
+}
+
 export const adminApi = {
+    getStats: async () => {
+        const response = await authenticatedFetch(`${ADMIN_API}/stats`);
+        return handleResponse<AdminStats>(response);
+    },
+
+    // Resolves when the server ends the stream (timeout or slow client); abort the signal to close it
+    streamDashboard: async (handlers: DashboardStreamHandlers, signal: AbortSignal) => {
+        const response = await authenticatedFetch(`${ADMIN_API}/stats/stream`, {
+            headers: { 'Accept': 'text/event-stream' },
+            signal,
+        });
+        await readEventStream(response, (name, data) => {
+            if (name === 'stats') handlers.onStats(JSON.parse(data) as AdminStats);
+            else if (name === 'progress') handlers.onProgress(JSON.parse(data) as DashboardUpdate);
+        });
+    },
+
     getDatasets: async () => {
         const response = await authenticatedFetch(`${ADMIN_API}/datasets/list`);
         return handleResponse<Dataset[]>(response);